@@ -1,25 +1,104 @@
 package controller;
 
 import java.io.File;
+import java.io.IOException;
 
+import filter.Filter;
+import format.PltFormat;
+import format.TrackFormat;
+import format.TrackFormats;
+import ingest.ThinningOptions;
+import model.dto.ImportReport;
+import repository.EmbeddedLocationStore;
+import repository.LocationStores;
+import service.DatasetImportService;
 import service.FileService;
-import service.implementation.FilePltServiceImp;
+import service.ImportJob;
+import service.ImportJobService;
+import service.ImportListener;
+import service.implementation.DatasetImportServiceImp;
+import service.implementation.FilePltCopyServiceImp;
+import service.implementation.FileStoreServiceImp;
+import service.implementation.FileTrackServiceImp;
+import service.implementation.ImportJobServiceImp;
 
 public class FileController {
 	
 	private FileService fileService;
+	private DatasetImportService datasetImportService;
+	private ImportJobService importJobService;
+	private Boolean copyLoader = Boolean.FALSE;
+	private ThinningOptions thinning = ThinningOptions.NONE;
+	
+	public FileController() {
+		datasetImportService = new DatasetImportServiceImp();
+		importJobService = new ImportJobServiceImp();
+	}
 	
 	public Boolean importData(File file, String plate) {
+		FileService service = createFileService(file);
+		if (service == null)
+			return Boolean.FALSE;
+		setFileService(service);
+		return getFileService().importData(file, plate);
+	}
+	
+	/**
+	 * Writes the matching locations to the file, in the format of its extension. The
+	 * file service then tells how many were written.
+	 */
+	public Boolean exportData(Filter filter, File file) {
+		if (TrackFormats.forName(file.getName()) == null)
+			return Boolean.FALSE;
+		EmbeddedLocationStore store = LocationStores.getEmbedded();
+		setFileService(store != null ? new FileStoreServiceImp(store) : new FileTrackServiceImp());
+		return getFileService().exportData(filter, file) != null;
+	}
+	
+	//every user folder of the tree is imported as its own plate
+	public ImportReport importDirectory(File directory, ImportJob job) {
+		return datasetImportService.importDirectory(directory, job);
+	}
+	
+	/**
+	 * Queues the import of a file or a dataset folder and returns at once.
+	 * @return the queued job, null if the file type is not supported
+	 */
+	public ImportJob submitImport(File file, String plate, ImportListener listener) {
+		if (file.isDirectory())
+			return importJobService.submit(file.getName(), listener, job -> importDirectory(file, job));
+		FileService service = createFileService(file);
+		if (service == null)
+			return null;
+		return importJobService.submit(file.getName(), listener, job -> service.importData(file, plate, job));
+	}
+	
+	public void cancelImports() {
+		importJobService.cancelAll();
+	}
+	
+	private FileService createFileService(File file) {
 		//factory pattern fileService
-		String extension = getFileExtension(file);
-		if (extension.equals(new String(".plt")))
-			setFileService(new FilePltServiceImp());
-		//else if (extension == ".json")
-		//	setFileService(new FileJsonService());
-		else return Boolean.FALSE;
-		
-		getFileService().importData(file, plate);
-		return Boolean.TRUE;
+		TrackFormat format;
+		try {
+			format = TrackFormats.forFile(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		if (format == null)
+			return null;
+		FileService service;
+		EmbeddedLocationStore store = LocationStores.getEmbedded();
+		if (store != null)
+			service = new FileStoreServiceImp(store);
+		//COPY streams PLT rows as text, it cannot thin them
+		else if (format instanceof PltFormat && copyLoader && !thinning.isEnabled())
+			service = new FilePltCopyServiceImp();
+		else
+			service = new FileTrackServiceImp();
+		service.setThinning(thinning);
+		return service;
 	}
 
 	public FileService getFileService() {
@@ -30,6 +109,23 @@ public class FileController {
 		this.fileService = fileService;
 	}
 	
+	public Boolean getCopyLoader() {
+		return copyLoader;
+	}
+
+	public void setCopyLoader(Boolean copyLoader) {
+		this.copyLoader = copyLoader;
+	}
+	
+	public ThinningOptions getThinning() {
+		return thinning;
+	}
+
+	public void setThinning(ThinningOptions thinning) {
+		this.thinning = thinning;
+		datasetImportService.setThinning(thinning);
+	}
+	
 	public String getFileExtension(File file) {
 	    String name = file.getName();
 	    int lastIndexOf = name.lastIndexOf(".");
@@ -4,34 +4,85 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
 
 import filter.Filter;
+import model.Vehicle;
+import model.dto.BoundingBox;
 import model.dto.Coordinate;
+import model.dto.TrajectoryBuffer;
+import model.dto.TileCount;
+import service.AsyncTrajectoryService;
 import service.FilterService;
 import service.TrajectoryService;
+import service.implementation.AsyncTrajectoryServiceImp;
 import service.implementation.FilterServiceImp;
 import service.implementation.TrajectoryServiceImp;
 
 public class TrajectoryController {
 	private TrajectoryService trajectoryService;
+	private AsyncTrajectoryService asyncTrajectoryService;
 	private FilterService filterService;
 	
 	public TrajectoryController() {
 		trajectoryService = new TrajectoryServiceImp();
+		asyncTrajectoryService = new AsyncTrajectoryServiceImp(trajectoryService);
 		filterService = new FilterServiceImp();
 	}
 	
 	public List<Coordinate> getTrajectory(String dateFrom, String dateTo, String plate){
-		Filter filter = filterService.setFilters(dateFrom, dateTo, plate);
+		return getTrajectory(dateFrom, dateTo, plate, null, null);
+	}
+	
+	//dates may carry a time, timeFrom and timeTo restrict every day to a window
+	public List<Coordinate> getTrajectory(String dateFrom, String dateTo, String plate, String timeFrom, String timeTo){
+		return getTrajectory(dateFrom, dateTo, plate, timeFrom, timeTo, null);
+	}
+	
+	//area is the part of the map in view, null for everywhere
+	public List<Coordinate> getTrajectory(String dateFrom, String dateTo, String plate, String timeFrom, String timeTo, BoundingBox area){
+		Filter filter = filterService.setFilters(dateFrom, dateTo, plate, timeFrom, timeTo, area);
 		if (filter != null)
 			return trajectoryService.getTrajectory(filter);
 		else return trajectoryService.getAllTrajectories();
 	}
 	
+	//for display, at most budget points a vehicle, see TrajectoryService
+	public List<Coordinate> getTrajectory(String dateFrom, String dateTo, String plate, BoundingBox area, Integer budget, Double metersPerPixel){
+		Filter filter = filterService.setFilters(dateFrom, dateTo, plate, null, null, area);
+		return trajectoryService.getTrajectory(filter, budget, metersPerPixel);
+	}
+	
+	//same as getTrajectory, a buffer a vehicle instead of a coordinate a point
+	public List<TrajectoryBuffer> getTrajectories(String dateFrom, String dateTo, String plate, BoundingBox area, Integer budget, Double metersPerPixel){
+		Filter filter = filterService.setFilters(dateFrom, dateTo, plate, null, null, area);
+		return trajectoryService.getTrajectories(filter, budget, metersPerPixel);
+	}
+	
+	//off the calling thread, cancel the future to stop the query
+	public CompletableFuture<List<TrajectoryBuffer>> getTrajectoriesAsync(String dateFrom, String dateTo, String plate, BoundingBox area){
+		Filter filter = filterService.setFilters(dateFrom, dateTo, plate, null, null, area);
+		return asyncTrajectoryService.getTrajectories(filter);
+	}
+	
+	public CompletableFuture<List<TrajectoryBuffer>> getTrajectoriesAsync(String dateFrom, String dateTo, String plate, BoundingBox area, Integer budget, Double metersPerPixel){
+		Filter filter = filterService.setFilters(dateFrom, dateTo, plate, null, null, area);
+		return asyncTrajectoryService.getTrajectories(filter, budget, metersPerPixel);
+	}
+	
 	public List<String> getPlates(){
 		return trajectoryService.getPlates();
 	}
 	
+	public Vehicle getVehicle(String plate){
+		return trajectoryService.getVehicle(plate);
+	}
+	
+	//plate null for every vehicle, zoom from 0 to 18
+	public List<TileCount> getTileCounts(String plate, Integer zoom){
+		return trajectoryService.getTileCounts(plate, zoom);
+	}
+	
 	public Map<String,String> getCoincidence(List<Coordinate> trajectory){
 		Map<String,String> result = new HashMap<String,String>();
 		List<Coordinate> preciseTrajectory = trajectoryService.setPrecision(trajectory, 3);
@@ -39,13 +90,18 @@ public class TrajectoryController {
 		Integer sizeSet = trajectorySortedSet.size();
 		List<String> plates = this.getPlates();
 		for(String plate : plates) {
-			List<Coordinate> trajToCompare = this.getTrajectory(null, null, plate);
-			trajToCompare = trajectoryService.setPrecision(trajToCompare, 3); //sets precision to 101 m
-			SortedSet<Coordinate> setToCompare = trajectoryService.getSortedSetLocations(trajToCompare);
+			//streamed, only the distinct points of the plate are held
+			Filter plateFilter = filterService.setFilters(null, null, plate);
+			SortedSet<Coordinate> setToCompare = trajectoryService.getSortedSetLocations(plateFilter, 3); //sets precision to 101 m
 			setToCompare.retainAll(trajectorySortedSet); //keeps only the elements contained in both trajectories
 			Double coincidence = ((double)setToCompare.size() / (double)sizeSet) * 100;
 			result.put(plate, coincidence.toString());
 		}
 		return result;
 	}
+	
+	//the plates are compared concurrently, cancelling the future stops the ones left
+	public CompletableFuture<Map<String,String>> getCoincidenceAsync(List<TrajectoryBuffer> trajectories){
+		return asyncTrajectoryService.getCoincidence(trajectories, 3);
+	}
 }
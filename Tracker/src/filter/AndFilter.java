@@ -1,5 +1,9 @@
 package filter;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 public class AndFilter implements Filter{
 
 	private Filter f1;
@@ -10,8 +14,39 @@ public class AndFilter implements Filter{
 		this.f2 = f2;
 	}
 
+	/**
+	 * Nested AND filters are flattened and their terms sorted by kind, so the same terms
+	 * give the same query whatever order they were combined in.
+	 */
 	@Override
-	public String getQuery() {
-		return f1.getQuery() + " AND " + f2.getQuery();
+	public void appendTo(FilterQuery query) {
+		List<Filter> terms = new ArrayList<Filter>();
+		addTerms(terms);
+		terms.sort(Comparator.comparing(term -> term.getClass().getName()));
+		for (int i = 0; i < terms.size(); ++i) {
+			if (i > 0)
+				query.append(" AND ");
+			terms.get(i).appendTo(query);
+		}
+	}
+	
+	@Override
+	public void narrow(FilterScope scope) {
+		f1.narrow(scope);
+		f2.narrow(scope);
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		return f1.matches(plate, latitude, longitude, epochSecond) && f2.matches(plate, latitude, longitude, epochSecond);
+	}
+	
+	private void addTerms(List<Filter> terms) {
+		for (Filter f : new Filter[] {f1, f2}) {
+			if (f instanceof AndFilter)
+				((AndFilter) f).addTerms(terms);
+			else
+				terms.add(f);
+		}
 	}
 }
@@ -0,0 +1,55 @@
+package filter;
+
+import java.util.List;
+
+import model.dto.BoundingBox;
+import util.MortonCode;
+
+/**
+ * Locations inside a box, edges included. The grid cells covering the box pick the
+ * rows off location_cell_idx, the latitude and longitude bounds then drop the ones
+ * from the parts of the cells outside it.
+ */
+public class BoundingBoxFilter implements Filter {
+	//cell ranges of a cover, more ranges fit the box closer but make a longer query
+	static final int MAX_RANGES = 32;
+	
+	private BoundingBox b;
+	
+	public BoundingBoxFilter(BoundingBox box) {
+		this.b = box;
+	}
+
+	@Override
+	public void appendTo(FilterQuery query) {
+		appendCells(query, MortonCode.cover(b.getSouth(), b.getWest(), b.getNorth(), b.getEast(), MAX_RANGES));
+		query.append(" AND l.latitude BETWEEN ").parameter(b.getSouth()).append(" AND ").parameter(b.getNorth());
+		if (b.getWest() <= b.getEast())
+			query.append(" AND l.longitude BETWEEN ").parameter(b.getWest()).append(" AND ").parameter(b.getEast());
+		else
+			query.append(" AND (l.longitude >= ").parameter(b.getWest()).append(" OR l.longitude <= ").parameter(b.getEast()).append(")");
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		if (latitude < b.getSouth() || latitude > b.getNorth())
+			return false;
+		if (b.getWest() <= b.getEast())
+			return longitude >= b.getWest() && longitude <= b.getEast();
+		return longitude >= b.getWest() || longitude <= b.getEast();
+	}
+	
+	static void appendCells(FilterQuery query, List<long[]> ranges) {
+		query.append("(");
+		for (int i = 0; i < ranges.size(); ++i) {
+			long[] range = ranges.get(i);
+			if (i > 0)
+				query.append(" OR ");
+			if (range[0] == range[1])
+				query.append("l.cell = ").parameter(range[0]);
+			else
+				query.append("l.cell BETWEEN ").parameter(range[0]).append(" AND ").parameter(range[1]);
+		}
+		query.append(")");
+	}
+}
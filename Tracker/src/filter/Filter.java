@@ -2,6 +2,21 @@ package filter;
 
 public interface Filter {
 
-	public String getQuery();
+	/**
+	 * Appends the condition on {@code l}, the Location alias, with its values as parameters.
+	 */
+	public void appendTo(FilterQuery query);
+	
+	/**
+	 * Restricts the scope to the plate or time range the filter matches, if it has one.
+	 */
+	public default void narrow(FilterScope scope) {
+	}
+	
+	/**
+	 * Evaluates the condition on one location, for the stores that do not run queries.
+	 * The time is in UTC epoch seconds of the location's date and time.
+	 */
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond);
 	
 }
@@ -0,0 +1,69 @@
+package filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JPQL condition built from a filter tree. Values are bound as parameters, so the text
+ * only depends on the shape of the tree and repeated searches reuse the cached plan.
+ */
+public class FilterQuery {
+	private final StringBuilder condition = new StringBuilder();
+	private final List<Object> parameters = new ArrayList<Object>();
+
+	//an empty query for a null filter
+	public static FilterQuery of(Filter filter) {
+		FilterQuery query = new FilterQuery();
+		if (filter != null)
+			filter.appendTo(query);
+		return query;
+	}
+
+	public FilterQuery append(String jpql) {
+		condition.append(jpql);
+		return this;
+	}
+
+	/**
+	 * Appends a parameter holding the value, named {@code p0}, {@code p1}... in order.
+	 */
+	public FilterQuery parameter(Object value) {
+		condition.append(":p").append(parameters.size());
+		parameters.add(value);
+		return this;
+	}
+
+	public String getCondition() {
+		return condition.toString();
+	}
+
+	//" WHERE <condition>", empty without condition
+	public String getWhere() {
+		return condition.length() == 0 ? "" : " WHERE " + condition;
+	}
+
+	public List<Object> getParameters() {
+		return Collections.unmodifiableList(parameters);
+	}
+
+	public static String parameterName(int i) {
+		return "p" + i;
+	}
+
+	//same condition and values, so the same rows
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof FilterQuery))
+			return false;
+		FilterQuery other = (FilterQuery) obj;
+		return getCondition().equals(other.getCondition()) && parameters.equals(other.parameters);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * getCondition().hashCode() + parameters.hashCode();
+	}
+}
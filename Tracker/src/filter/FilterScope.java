@@ -0,0 +1,74 @@
+package filter;
+
+import java.sql.Timestamp;
+
+/**
+ * The plate and time range a filter can match at most. Filters that do not narrow it
+ * leave it as wide as it is, which is always safe for the caches relying on it.
+ */
+public class FilterScope {
+	private String plate;
+	private Timestamp from;
+	private Timestamp to;
+	//terms no location can satisfy together, two plates for instance
+	private boolean empty;
+
+	//everything for a null filter
+	public static FilterScope of(Filter filter) {
+		FilterScope scope = new FilterScope();
+		if (filter != null)
+			filter.narrow(scope);
+		return scope;
+	}
+
+	public void restrictPlate(String plate) {
+		if (this.plate != null && !this.plate.equals(plate))
+			empty = true;
+		this.plate = plate;
+	}
+
+	public void restrictFrom(Timestamp from) {
+		if (this.from == null || from.after(this.from))
+			this.from = from;
+	}
+
+	public void restrictTo(Timestamp to) {
+		if (this.to == null || to.before(this.to))
+			this.to = to;
+	}
+
+	/**
+	 * Whether locations of the plate between first and last may match, a null plate or
+	 * time standing for unknown.
+	 */
+	public boolean overlaps(String plate, Timestamp first, Timestamp last) {
+		if (empty || (this.plate != null && plate != null && !this.plate.equals(plate)))
+			return false;
+		if (from != null && last != null && last.before(from))
+			return false;
+		return to == null || first == null || !first.after(to);
+	}
+
+	//null for any plate
+	public String getPlate() {
+		return plate;
+	}
+
+	//null for an open end
+	public Timestamp getFrom() {
+		return from;
+	}
+
+	public Timestamp getTo() {
+		return to;
+	}
+
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	@Override
+	public String toString() {
+		return empty ? "nothing" : (plate == null ? "any plate" : plate) + " from " + from + " to " + to;
+	}
+}
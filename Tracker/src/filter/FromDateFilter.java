@@ -1,5 +1,6 @@
 package filter;
 import java.sql.Date;
+import java.sql.Timestamp;
 
 public class FromDateFilter implements Filter{
 	
@@ -9,8 +10,19 @@ public class FromDateFilter implements Filter{
 		this.d = date;
 	}
 
+	//on the timestamp so the index is used
 	@Override
-	public String getQuery() {
-		return "l.date >= '" + this.d + "'";
+	public void appendTo(FilterQuery query) {
+		query.append("l.timestamp >= ").parameter(Timestamp.valueOf(this.d.toLocalDate().atStartOfDay()));
+	}
+	
+	@Override
+	public void narrow(FilterScope scope) {
+		scope.restrictFrom(Timestamp.valueOf(this.d.toLocalDate().atStartOfDay()));
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		return epochSecond >= this.d.toLocalDate().toEpochDay() * 86400;
 	}
 }
@@ -8,9 +8,20 @@ public class PlateFilter implements Filter {
 		this.p = plate;
 	}
 
+	//the subquery finds the vehicle once, the locations are then read by vehicle_id
 	@Override
-	public String getQuery() {
-		return "l.plate = '" + this.p + "'"; 
+	public void appendTo(FilterQuery query) {
+		query.append("l.vehicleId = (SELECT v.vehicleId FROM Vehicle v WHERE v.plate = ").parameter(this.p).append(")");
+	}
+	
+	@Override
+	public void narrow(FilterScope scope) {
+		scope.restrictPlate(this.p);
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		return this.p.equals(plate);
 	}
 	
 }
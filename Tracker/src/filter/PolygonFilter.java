@@ -0,0 +1,73 @@
+package filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.dto.Coordinate;
+import util.MortonCode;
+
+/**
+ * Locations inside a polygon, given by its vertices in order. The box around the
+ * polygon goes through the cell index, then a point is inside when a ray going east
+ * from it crosses an odd number of edges. Edges are taken as straight in degrees.
+ */
+public class PolygonFilter implements Filter {
+	
+	private List<Coordinate> vertices;
+	
+	public PolygonFilter(List<Coordinate> vertices) {
+		if (vertices.size() < 3)
+			throw new IllegalArgumentException("a polygon needs 3 vertices, got " + vertices.size());
+		this.vertices = new ArrayList<Coordinate>(vertices);
+	}
+
+	@Override
+	public void appendTo(FilterQuery query) {
+		double south = 90, west = 180, north = -90, east = -180;
+		for (Coordinate vertex : vertices) {
+			south = Math.min(south, vertex.getLat());
+			north = Math.max(north, vertex.getLat());
+			west = Math.min(west, vertex.getLon());
+			east = Math.max(east, vertex.getLon());
+		}
+		BoundingBoxFilter.appendCells(query, MortonCode.cover(south, west, north, east, BoundingBoxFilter.MAX_RANGES));
+		query.append(" AND l.latitude BETWEEN ").parameter(south).append(" AND ").parameter(north)
+			.append(" AND l.longitude BETWEEN ").parameter(west).append(" AND ").parameter(east)
+			.append(" AND MOD(0");
+		for (int i = 0; i < vertices.size(); ++i) {
+			Coordinate a = vertices.get(i);
+			Coordinate b = vertices.get((i + 1) % vertices.size());
+			if (a.getLat() == b.getLat())
+				continue;
+			Coordinate low = a.getLat() < b.getLat() ? a : b;
+			Coordinate high = low == a ? b : a;
+			//the edge crosses the point's latitude east of it: lon < intercept + lat * slope
+			double slope = (high.getLon() - low.getLon()) / (high.getLat() - low.getLat());
+			double intercept = low.getLon() - low.getLat() * slope;
+			query.append(" + CASE WHEN l.latitude >= ").parameter(low.getLat())
+				.append(" AND l.latitude < ").parameter(high.getLat())
+				.append(" AND l.longitude < ").parameter(intercept).append(" + l.latitude * ").parameter(slope)
+				.append(" THEN 1 ELSE 0 END");
+		}
+		query.append(", 2) = 1");
+	}
+	
+	//the same crossings as the query counts
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		boolean inside = false;
+		for (int i = 0; i < vertices.size(); ++i) {
+			Coordinate a = vertices.get(i);
+			Coordinate b = vertices.get((i + 1) % vertices.size());
+			if (a.getLat() == b.getLat())
+				continue;
+			Coordinate low = a.getLat() < b.getLat() ? a : b;
+			Coordinate high = low == a ? b : a;
+			double slope = (high.getLon() - low.getLon()) / (high.getLat() - low.getLat());
+			if (latitude >= low.getLat() && latitude < high.getLat()
+					&& longitude < low.getLon() + (latitude - low.getLat()) * slope)
+				inside = !inside;
+		}
+		return inside;
+	}
+}
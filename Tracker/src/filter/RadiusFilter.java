@@ -0,0 +1,53 @@
+package filter;
+
+import util.MortonCode;
+
+/**
+ * Locations within a distance of a point. The box around the circle goes through the
+ * cell index, the distance is then measured on a plane tangent at the center, close
+ * enough for the few kilometers a search spans.
+ */
+public class RadiusFilter implements Filter {
+	private static final double METERS_PER_DEGREE = 111320;
+	
+	private double lat;
+	private double lon;
+	private double meters;
+	//squared cosine of the latitude and squared radius in degrees, for matches
+	private double cos2;
+	private double dLat2;
+	
+	public RadiusFilter(double lat, double lon, double meters) {
+		this.lat = lat;
+		this.lon = lon;
+		this.meters = meters;
+		double cos = Math.cos(Math.toRadians(lat));
+		this.cos2 = cos * cos;
+		this.dLat2 = (meters / METERS_PER_DEGREE) * (meters / METERS_PER_DEGREE);
+	}
+
+	@Override
+	public void appendTo(FilterQuery query) {
+		double dLat = meters / METERS_PER_DEGREE;
+		double cos = Math.cos(Math.toRadians(lat));
+		//past the poles the circle takes every longitude
+		double dLon = Math.abs(lat) + dLat >= 90 ? 180 : dLat / cos;
+		double west = dLon >= 180 ? -180 : wrap(lon - dLon);
+		double east = dLon >= 180 ? 180 : wrap(lon + dLon);
+		BoundingBoxFilter.appendCells(query, MortonCode.cover(Math.max(-90, lat - dLat), west, Math.min(90, lat + dLat), east, BoundingBoxFilter.MAX_RANGES));
+		//longitudes are not wrapped here, a circle over the antimeridian misses its far side
+		query.append(" AND (l.latitude - ").parameter(lat).append(") * (l.latitude - ").parameter(lat)
+			.append(") + (l.longitude - ").parameter(lon).append(") * (l.longitude - ").parameter(lon)
+			.append(") * ").parameter(cos * cos).append(" <= ").parameter(dLat * dLat);
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		double y = latitude - lat, x = longitude - lon;
+		return y * y + x * x * cos2 <= dLat2;
+	}
+	
+	private static double wrap(double lon) {
+		return lon > 180 ? lon - 360 : lon < -180 ? lon + 360 : lon;
+	}
+}
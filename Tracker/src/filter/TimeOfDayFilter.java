@@ -0,0 +1,36 @@
+package filter;
+import java.sql.Time;
+import java.time.LocalTime;
+
+/**
+ * Locations recorded between two times of any day, both included. A window whose end
+ * comes before its start runs over midnight.
+ */
+public class TimeOfDayFilter implements Filter {
+	
+	private Time from;
+	private Time to;
+	private int fromSecond;
+	private int toSecond;
+	
+	public TimeOfDayFilter(LocalTime from, LocalTime to) {
+		this.from = Time.valueOf(from);
+		this.to = Time.valueOf(to);
+		this.fromSecond = from.toSecondOfDay();
+		this.toSecond = to.toSecondOfDay();
+	}
+
+	@Override
+	public void appendTo(FilterQuery query) {
+		String operator = from.after(to) ? " OR " : " AND ";
+		query.append("(l.time >= ").parameter(this.from).append(operator).append("l.time <= ").parameter(this.to).append(")");
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		long second = Math.floorMod(epochSecond, 86400);
+		if (fromSecond > toSecond)
+			return second >= fromSecond || second <= toSecond;
+		return second >= fromSecond && second <= toSecond;
+	}
+}
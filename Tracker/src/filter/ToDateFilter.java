@@ -1,5 +1,6 @@
 package filter;
 import java.sql.Date;
+import java.sql.Timestamp;
 
 public class ToDateFilter implements Filter {
 	
@@ -9,9 +10,20 @@ public class ToDateFilter implements Filter {
 		this.d = date;
 	}
 
+	//the whole day is included, on the timestamp so the index is used
 	@Override
-	public String getQuery() {
-		return "l.date <= '" + this.d + "'";
+	public void appendTo(FilterQuery query) {
+		query.append("l.timestamp < ").parameter(Timestamp.valueOf(this.d.toLocalDate().plusDays(1).atStartOfDay()));
+	}
+	
+	@Override
+	public void narrow(FilterScope scope) {
+		scope.restrictTo(Timestamp.valueOf(this.d.toLocalDate().plusDays(1).atStartOfDay()));
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		return epochSecond < (this.d.toLocalDate().toEpochDay() + 1) * 86400;
 	}
 	
 }
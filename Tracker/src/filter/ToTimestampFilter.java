@@ -0,0 +1,30 @@
+package filter;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public class ToTimestampFilter implements Filter {
+	
+	private Timestamp t;
+	private long epochSecond;
+	
+	public ToTimestampFilter(LocalDateTime timestamp) {
+		this.t = Timestamp.valueOf(timestamp);
+		this.epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	@Override
+	public void appendTo(FilterQuery query) {
+		query.append("l.timestamp <= ").parameter(this.t);
+	}
+	
+	@Override
+	public void narrow(FilterScope scope) {
+		scope.restrictTo(this.t);
+	}
+	
+	@Override
+	public boolean matches(String plate, double latitude, double longitude, long epochSecond) {
+		return epochSecond <= this.epochSecond;
+	}
+}
@@ -0,0 +1,53 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binary trajectory archive, see {@link ArchiveWriter} for the layout.
+ */
+public class ArchiveFormat implements TrackFormat {
+	static final byte[] MAGIC = {'T', 'K', 'A', '1'};
+	//magic and 4 reserved bytes
+	static final int FILE_HEADER = 8;
+	//count, 4 column lengths, bounding box, time range and track name length
+	static final int BLOCK_HEADER = 4 + 4 * 4 + 4 * 4 + 2 * 8 + 2;
+	static final double SCALE = 1e7;
+	//altitudes are kept to a tenth of a foot
+	static final double ALTITUDE_SCALE = 10;
+	static final long NO_ALTITUDE = Long.MIN_VALUE;
+
+	@Override
+	public String getName() {
+		return "Tracker archive";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Collections.singletonList("tka");
+	}
+
+	@Override
+	public boolean sniff(byte[] head, int length) {
+		if (length < MAGIC.length)
+			return false;
+		for (int i = 0; i < MAGIC.length; ++i) {
+			if (head[i] != MAGIC[i])
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public TrackReader open(File file, long position, long line) throws IOException {
+		return new ArchiveReader(file, position);
+	}
+
+	@Override
+	public TrackWriter createWriter(OutputStream out) throws IOException {
+		return new ArchiveWriter(out);
+	}
+}
@@ -0,0 +1,202 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped reader of the binary archive format written by {@link ArchiveWriter}.
+ * Columns are decoded straight from the mapping.
+ *
+ * A batch never mixes tracks, {@link #getTrack()} names the track of the last batch.
+ * Positions are point numbers; a resumed read skips whole blocks by their count without
+ * decoding them.
+ */
+public class ArchiveReader implements TrackReader {
+	private static final int LATITUDE = 0;
+	private static final int LONGITUDE = 1;
+	private static final int ALTITUDE = 2;
+	private static final int TIME = 3;
+
+	private final String source;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int limit;
+	private int next = ArchiveFormat.FILE_HEADER;
+	private long points;
+
+	//block being decoded
+	private final int[] cursor = new int[4];
+	private int remaining;
+	private int decoded;
+	private String track = "";
+	private long latitude;
+	private long longitude;
+	private long altitude;
+	private long time;
+	private long delta;
+
+	public ArchiveReader(File file) throws IOException {
+		this(file, 0);
+	}
+
+	public ArchiveReader(File file, long position) throws IOException {
+		source = file.getName();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(source + " is too large to be mapped");
+			buffer = channel.map(MapMode.READ_ONLY, 0, size);
+			limit = buffer.limit();
+			byte[] head = new byte[Math.min(limit, ArchiveFormat.MAGIC.length)];
+			buffer.get(head);
+			if (!new ArchiveFormat().sniff(head, head.length))
+				throw new MalformedLineException(source, 0, "not a Tracker archive");
+			skip(position);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(PointBatch batch) throws IOException {
+		batch.clear();
+		while (!batch.isFull()) {
+			if (remaining == 0) {
+				//a batch holds the points of a single track
+				if (batch.size() > 0 || !nextBlock())
+					break;
+				continue;
+			}
+			decode();
+			++points;
+			double alt = altitude == ArchiveFormat.NO_ALTITUDE ? Double.NaN : altitude / ArchiveFormat.ALTITUDE_SCALE;
+			batch.add(latitude / ArchiveFormat.SCALE, longitude / ArchiveFormat.SCALE, alt, time, points, points);
+		}
+		return batch.size();
+	}
+
+	private void decode() {
+		latitude += varint(LATITUDE);
+		longitude += varint(LONGITUDE);
+		altitude += varint(ALTITUDE);
+		long v = varint(TIME);
+		if (decoded == 0) {
+			time = v;
+			delta = 0;
+		}
+		else {
+			delta += v;
+			time += delta;
+		}
+		++decoded;
+		--remaining;
+	}
+
+	private long varint(int column) {
+		int position = cursor[column];
+		long v = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get(position++);
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		cursor[column] = position;
+		return Varints.unzigzag(v);
+	}
+
+	/**
+	 * Moves to the next block.
+	 * @return false at the end of the file
+	 */
+	private boolean nextBlock() throws MalformedLineException {
+		if (next >= limit)
+			return false;
+		int start = next;
+		if (limit - start < ArchiveFormat.BLOCK_HEADER)
+			throw malformed("truncated block header");
+		int count = buffer.getInt(start);
+		int payload = 0;
+		for (int c = 0; c < cursor.length; ++c)
+			payload += buffer.getInt(start + 4 + 4 * c);
+		int nameLength = buffer.getShort(start + ArchiveFormat.BLOCK_HEADER - 2);
+		int columns = start + ArchiveFormat.BLOCK_HEADER + nameLength;
+		if (count < 0 || payload < 0 || nameLength < 0 || (long) columns + payload > limit)
+			throw malformed("truncated block");
+		next = columns + payload;
+		byte[] name = new byte[nameLength];
+		for (int i = 0; i < nameLength; ++i)
+			name[i] = buffer.get(start + ArchiveFormat.BLOCK_HEADER + i);
+		track = new String(name, StandardCharsets.UTF_8);
+		int column = columns;
+		for (int c = 0; c < cursor.length; ++c) {
+			cursor[c] = column;
+			column += buffer.getInt(start + 4 + 4 * c);
+		}
+		remaining = count;
+		decoded = 0;
+		latitude = 0;
+		longitude = 0;
+		altitude = 0;
+		return true;
+	}
+
+	private void skip(long position) throws MalformedLineException {
+		while (points < position) {
+			if (remaining == 0) {
+				int start = next;
+				if (start < limit && limit - start >= ArchiveFormat.BLOCK_HEADER && points + buffer.getInt(start) <= position) {
+					//whole block
+					nextBlock();
+					points += remaining;
+					remaining = 0;
+					continue;
+				}
+				if (!nextBlock())
+					return;
+			}
+			decode();
+			++points;
+		}
+	}
+
+	/**
+	 * Name of the track the last batch belongs to.
+	 */
+	@Override
+	public String getTrack() {
+		return track;
+	}
+
+	@Override
+	public long getPosition() {
+		return points;
+	}
+
+	@Override
+	public long getLine() {
+		return points;
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	private MalformedLineException malformed(String message) {
+		return new MalformedLineException(source, points, message);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,118 @@
+package format;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the binary archive format. After an 8 byte file header ({@code TKA1} and 4
+ * reserved bytes) come blocks of up to {@link #BLOCK_SIZE} points of one track:
+ *
+ * <pre>
+ * int    count
+ * int    latitude, longitude, altitude, time column lengths in bytes
+ * int    min latitude, max latitude, min longitude, max longitude (1e-7 degrees)
+ * long   min time, max time (epoch seconds)
+ * short  track name length, then the UTF-8 name
+ * bytes  latitude, longitude, altitude and time columns
+ * </pre>
+ *
+ * Coordinates are 1e-7 degree fixed point and altitudes tenths of a foot, both stored as
+ * zigzag varint deltas from the previous point; times are zigzag varint deltas of
+ * deltas. Every block starts from zero, so it decodes on its own.
+ */
+public class ArchiveWriter implements TrackWriter {
+	public static final int BLOCK_SIZE = 4096;
+
+	private final DataOutputStream out;
+	private final PointBatch block = new PointBatch(BLOCK_SIZE);
+	private final byte[][] columns = new byte[4][BLOCK_SIZE * Varints.MAX_LENGTH];
+	private final int[] lengths = new int[4];
+	private byte[] name = new byte[0];
+
+	public ArchiveWriter(OutputStream out) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.out.write(ArchiveFormat.MAGIC);
+		this.out.writeInt(0);
+	}
+
+	@Override
+	public void startTrack(String name) throws IOException {
+		flush();
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > Short.MAX_VALUE)
+			throw new IOException("track name too long");
+		this.name = bytes;
+	}
+
+	@Override
+	public void write(PointBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); ++i) {
+			block.add(batch, i);
+			if (block.isFull())
+				flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		int count = block.size();
+		if (count == 0)
+			return;
+		int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+		int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+		long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+		long lat = 0, lon = 0, alt = 0, time = 0, delta = 0;
+		for (int c = 0; c < lengths.length; ++c)
+			lengths[c] = 0;
+		for (int i = 0; i < count; ++i) {
+			int latitude = (int) Math.round(block.getLatitude(i) * ArchiveFormat.SCALE);
+			int longitude = (int) Math.round(block.getLongitude(i) * ArchiveFormat.SCALE);
+			double altitudeFeet = block.getAltitude(i);
+			long altitude = Double.isNaN(altitudeFeet) ? ArchiveFormat.NO_ALTITUDE : Math.round(altitudeFeet * ArchiveFormat.ALTITUDE_SCALE);
+			long t = block.getTime(i);
+			lengths[0] = Varints.write(columns[0], lengths[0], latitude - lat);
+			lengths[1] = Varints.write(columns[1], lengths[1], longitude - lon);
+			//wraps around for the missing altitude marker, and back when decoded
+			lengths[2] = Varints.write(columns[2], lengths[2], altitude - alt);
+			long d = i == 0 ? t : t - time;
+			lengths[3] = Varints.write(columns[3], lengths[3], i == 0 ? t : d - delta);
+			if (i > 0)
+				delta = d;
+			lat = latitude;
+			lon = longitude;
+			alt = altitude;
+			time = t;
+			minLat = Math.min(minLat, latitude);
+			maxLat = Math.max(maxLat, latitude);
+			minLon = Math.min(minLon, longitude);
+			maxLon = Math.max(maxLon, longitude);
+			minTime = Math.min(minTime, t);
+			maxTime = Math.max(maxTime, t);
+		}
+		out.writeInt(count);
+		for (int length : lengths)
+			out.writeInt(length);
+		out.writeInt(minLat);
+		out.writeInt(maxLat);
+		out.writeInt(minLon);
+		out.writeInt(maxLon);
+		out.writeLong(minTime);
+		out.writeLong(maxTime);
+		out.writeShort(name.length);
+		out.write(name);
+		for (int c = 0; c < columns.length; ++c)
+			out.write(columns[c], 0, lengths[c]);
+		block.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class CsvFormat implements TrackFormat {
+
+	@Override
+	public String getName() {
+		return "CSV";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Arrays.asList("csv", "tsv");
+	}
+
+	@Override
+	public boolean sniff(byte[] head, int length) {
+		String text = TrackFormats.text(head, length);
+		int end = text.indexOf('\n');
+		return end > 0 && CsvReader.isHeader(text.substring(0, end));
+	}
+
+	@Override
+	public TrackReader open(File file, long position, long line) throws IOException {
+		return new CsvReader(file, position, line);
+	}
+
+	@Override
+	public TrackWriter createWriter(OutputStream out) throws IOException {
+		return new CsvWriter(out);
+	}
+}
@@ -0,0 +1,234 @@
+package format;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+
+/**
+ * Delimited text with a header row. Columns are found by name:
+ * latitude ({@code lat}, {@code latitude}), longitude ({@code lon}, {@code lng},
+ * {@code long}, {@code longitude}), the time either in one column ({@code time},
+ * {@code timestamp}, {@code datetime}) or split into {@code date} and {@code time}, and
+ * an optional altitude, in feet for {@code alt}/{@code altitude} like the PLT files and
+ * in meters for {@code ele}/{@code elevation}. Comma, semicolon and tab delimiters are
+ * recognised from the header.
+ */
+public class CsvReader implements TrackReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final String source;
+	private final FileChannel channel;
+	private InputStream in;
+	private final char delimiter;
+	private final int latitudeColumn;
+	private final int longitudeColumn;
+	private final int altitudeColumn;
+	private final boolean altitudeInMeters;
+	private final int timeColumn;
+	private final int dateColumn;
+	private final int columns;
+	private final String[] fields;
+	private byte[] text = new byte[256];
+	private long position;
+	private long line;
+
+	public CsvReader(File file) throws IOException {
+		this(file, 0, 0);
+	}
+
+	public CsvReader(File file, long position, long line) throws IOException {
+		source = file.getName();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+			String header = nextLine();
+			if (header == null)
+				throw new MalformedLineException(source, 1, "missing header");
+			if (header.startsWith("\uFEFF"))
+				header = header.substring(1);
+			delimiter = delimiter(header);
+			String[] names = new String[header.length() + 1];
+			columns = split(header, names);
+			int lat = -1, lon = -1, alt = -1, ele = -1, time = -1, date = -1;
+			for (int i = 0; i < columns; ++i) {
+				String name = names[i].trim().toLowerCase();
+				if (name.equals("lat") || name.equals("latitude"))
+					lat = i;
+				else if (name.equals("lon") || name.equals("lng") || name.equals("long") || name.equals("longitude"))
+					lon = i;
+				else if (name.equals("alt") || name.equals("altitude"))
+					alt = i;
+				else if (name.equals("ele") || name.equals("elevation"))
+					ele = i;
+				else if (name.equals("time") || name.equals("timestamp") || name.equals("datetime"))
+					time = i;
+				else if (name.equals("date"))
+					date = i;
+			}
+			if (lat < 0 || lon < 0 || time < 0)
+				throw new MalformedLineException(source, 1, "expected latitude, longitude and time columns");
+			latitudeColumn = lat;
+			longitudeColumn = lon;
+			altitudeColumn = alt >= 0 ? alt : ele;
+			altitudeInMeters = alt < 0 && ele >= 0;
+			timeColumn = time;
+			dateColumn = date;
+			fields = new String[columns];
+			if (position > this.position) {
+				channel.position(position);
+				in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+				this.position = position;
+				this.line = line;
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Whether a header line names latitude and longitude columns.
+	 */
+	static boolean isHeader(String header) {
+		String lower = header.toLowerCase();
+		return lower.matches("(?s).*\\blat(itude)?\\b.*") && lower.matches("(?s).*\\b(lon|lng|long|longitude)\\b.*");
+	}
+
+	@Override
+	public int read(PointBatch batch) throws IOException {
+		batch.clear();
+		String row;
+		while (!batch.isFull() && (row = nextLine()) != null) {
+			if (row.trim().isEmpty())
+				continue;
+			if (split(row, fields) < columns)
+				throw malformed("expected " + columns + " fields");
+			try {
+				double latitude = Double.parseDouble(fields[latitudeColumn].trim());
+				double longitude = Double.parseDouble(fields[longitudeColumn].trim());
+				if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180)
+					throw malformed("coordinate out of range");
+				double altitude = Double.NaN;
+				if (altitudeColumn >= 0 && !fields[altitudeColumn].trim().isEmpty()) {
+					altitude = Double.parseDouble(fields[altitudeColumn].trim());
+					if (altitudeInMeters)
+						altitude = Timestamps.feet(altitude);
+				}
+				String time = fields[timeColumn];
+				if (dateColumn >= 0)
+					time = fields[dateColumn].trim() + 'T' + time.trim();
+				batch.add(latitude, longitude, altitude, Timestamps.parse(time), line, position);
+			} catch (NumberFormatException e) {
+				throw malformed("invalid number");
+			} catch (DateTimeException e) {
+				throw malformed("invalid time");
+			}
+		}
+		return batch.size();
+	}
+
+	private MalformedLineException malformed(String message) {
+		return new MalformedLineException(source, line, message);
+	}
+
+	//the next line without its end, null at the end of the file
+	private String nextLine() throws IOException {
+		int length = 0;
+		int b = in.read();
+		if (b < 0)
+			return null;
+		while (b >= 0) {
+			++position;
+			if (b == '\n')
+				break;
+			if (length == text.length) {
+				byte[] larger = new byte[2 * text.length];
+				System.arraycopy(text, 0, larger, 0, length);
+				text = larger;
+			}
+			text[length++] = (byte) b;
+			b = in.read();
+		}
+		if (length > 0 && text[length - 1] == '\r')
+			--length;
+		++line;
+		return new String(text, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private char delimiter(String header) {
+		char best = ',';
+		int most = count(header, ',');
+		for (char candidate : new char[] {';', '\t'}) {
+			int found = count(header, candidate);
+			if (found > most) {
+				best = candidate;
+				most = found;
+			}
+		}
+		return best;
+	}
+
+	private static int count(String text, char c) {
+		int count = 0;
+		for (int i = 0; i < text.length(); ++i) {
+			if (text.charAt(i) == c)
+				++count;
+		}
+		return count;
+	}
+
+	//splits on the delimiter outside double quotes, extra fields are dropped
+	private int split(String row, String[] into) {
+		int count = 0;
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < row.length(); ++i) {
+			char c = row.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+					field.append(c);
+					++i;
+				}
+				else
+					quoted = !quoted;
+			}
+			else if (c == delimiter && !quoted) {
+				if (count < into.length)
+					into[count] = field.toString();
+				++count;
+				field.setLength(0);
+			}
+			else
+				field.append(c);
+		}
+		if (count < into.length)
+			into[count] = field.toString();
+		return Math.min(count + 1, into.length);
+	}
+
+	@Override
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public long getLine() {
+		return line;
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
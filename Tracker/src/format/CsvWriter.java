@@ -0,0 +1,55 @@
+package format;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@code plate,latitude,longitude,altitude,time} rows, readable again by
+ * {@link CsvReader}. Altitudes are in feet, times in ISO-8601 UTC.
+ */
+public class CsvWriter implements TrackWriter {
+	private final Writer out;
+	private String plate = "";
+
+	public CsvWriter(OutputStream out) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+		this.out.write("plate,latitude,longitude,altitude,time\n");
+	}
+
+	@Override
+	public void startTrack(String name) {
+		plate = quote(name);
+	}
+
+	@Override
+	public void write(PointBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); ++i) {
+			out.write(plate);
+			out.write(',');
+			out.write(Double.toString(batch.getLatitude(i)));
+			out.write(',');
+			out.write(Double.toString(batch.getLongitude(i)));
+			out.write(',');
+			if (!Double.isNaN(batch.getAltitude(i)))
+				out.write(Double.toString(batch.getAltitude(i)));
+			out.write(',');
+			out.write(Timestamps.format(batch.getTime(i)));
+			out.write('\n');
+		}
+	}
+
+	private static String quote(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0)
+			return field;
+		return '"' + field.replace("\"", "\"\"") + '"';
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
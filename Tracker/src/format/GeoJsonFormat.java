@@ -0,0 +1,37 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class GeoJsonFormat implements TrackFormat {
+
+	@Override
+	public String getName() {
+		return "GeoJSON";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Arrays.asList("geojson", "json");
+	}
+
+	@Override
+	public boolean sniff(byte[] head, int length) {
+		String text = TrackFormats.text(head, length);
+		return text.startsWith("{") && text.contains("\"type\"")
+				&& (text.contains("\"Feature") || text.contains("\"coordinates\""));
+	}
+
+	@Override
+	public TrackReader open(File file, long position, long line) throws IOException {
+		return new GeoJsonReader(file, position, line);
+	}
+
+	@Override
+	public TrackWriter createWriter(OutputStream out) throws IOException {
+		return new GeoJsonWriter(out);
+	}
+}
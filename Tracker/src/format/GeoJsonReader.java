@@ -0,0 +1,364 @@
+package format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.DateTimeException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * GeoJSON reader. The coordinates of a geometry are read straight into the batch from the
+ * tokenizer and nothing else of a feature is kept but the times of its properties, 8
+ * bytes a point of a {@code coordTimes}. A LineString timed by its coordinates, or a Point
+ * feature a fix, is read in constant memory however long the file.
+ *
+ * Times come from the {@code time}/{@code timestamp} property of a single point, from a
+ * {@code coordTimes}/{@code times} property running along the coordinates, or from a
+ * fourth coordinate. Points whose time is only known at the end of their feature, from
+ * properties written after the geometry, are held until then, at most
+ * {@link #MAX_HELD} of them: a larger feature has to put its properties first. Geometries
+ * are expected to name their type before their coordinates, as writers do, else the
+ * coordinates are read as a track. Altitudes are converted from meters to feet.
+ * Positions are point numbers, a resumed read skips that many points.
+ */
+public class GeoJsonReader implements TrackReader {
+	public static final int MAX_HELD = 1 << 20;
+	private static final int OBJECT = 0;
+	//the features of a collection or the geometries of a GeometryCollection
+	private static final int OBJECTS = 1;
+	private static final int COORDINATES = 2;
+
+	private final String source;
+	private final Reader in;
+	private final JsonTokenizer json;
+	private final long skip;
+	private final Deque<Frame> frames = new ArrayDeque<Frame>();
+	private boolean started;
+	private long points;
+	//of the feature being read
+	private final Times times = new Times();
+	private boolean coordTimes;
+	private String single;
+	private int index;
+	private final Held held = new Held();
+	//the held points are timed and emitted from here on
+	private int drained = -1;
+
+	public GeoJsonReader(File file) throws IOException {
+		this(file, 0, 0);
+	}
+
+	public GeoJsonReader(File file, long position, long line) throws IOException {
+		source = file.getName();
+		in = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8), 1 << 16);
+		json = new JsonTokenizer(source, in);
+		skip = position;
+	}
+
+	@Override
+	public int read(PointBatch batch) throws IOException {
+		batch.clear();
+		while (!batch.isFull()) {
+			if (drained >= 0) {
+				if (drained < held.size) {
+					emit(batch, held.lat[drained], held.lon[drained], held.alt[drained], held.time[drained], held.line[drained]);
+					++drained;
+					continue;
+				}
+				held.clear();
+				drained = -1;
+			}
+			if (!step(batch))
+				break;
+		}
+		return batch.size();
+	}
+
+	//reads up to the next point or the end of a feature, false at the end of the file
+	private boolean step(PointBatch batch) throws IOException {
+		if (!started) {
+			if (json.next() != JsonTokenizer.BEGIN_OBJECT)
+				throw json.malformed("expected a GeoJSON object");
+			started = true;
+			startFeature(new Frame(OBJECT, true));
+			return true;
+		}
+		Frame frame = frames.peek();
+		if (frame == null)
+			return false;
+		int token = json.next();
+		if (token == JsonTokenizer.END)
+			throw json.malformed("unexpected end of file");
+		switch (frame.kind) {
+		case COORDINATES:
+			coordinate(frame, token, batch);
+			break;
+		case OBJECTS:
+			if (token == JsonTokenizer.END_ARRAY)
+				frames.pop();
+			else if (token != JsonTokenizer.BEGIN_OBJECT)
+				throw json.malformed(frame.features ? "expected a feature" : "expected a geometry");
+			else if (frame.features)
+				startFeature(new Frame(OBJECT, true));
+			else
+				frames.push(new Frame(OBJECT, false));
+			break;
+		default:
+			if (token == JsonTokenizer.END_OBJECT) {
+				frames.pop();
+				if (frame.features)
+					endFeature();
+			}
+			else if (token != JsonTokenizer.NAME)
+				throw json.malformed("expected a member name");
+			else
+				member(frame, json.getText());
+		}
+		return true;
+	}
+
+	private void member(Frame frame, String name) throws IOException {
+		int token = json.next();
+		if (name.equals("type") && token == JsonTokenizer.STRING)
+			frame.type = json.getText();
+		else if (name.equals("features") && token == JsonTokenizer.BEGIN_ARRAY)
+			frames.push(new Frame(OBJECTS, true));
+		else if (name.equals("geometries") && token == JsonTokenizer.BEGIN_ARRAY)
+			frames.push(new Frame(OBJECTS, false));
+		else if (name.equals("geometry") && token == JsonTokenizer.BEGIN_OBJECT)
+			frames.push(new Frame(OBJECT, false));
+		else if (name.equals("properties") && frame.features && token == JsonTokenizer.BEGIN_OBJECT)
+			properties();
+		//areas are not tracks
+		else if (name.equals("coordinates") && token == JsonTokenizer.BEGIN_ARRAY
+				&& !"Polygon".equals(frame.type) && !"MultiPolygon".equals(frame.type)) {
+			Frame coordinates = new Frame(COORDINATES, false);
+			coordinates.open = 1;
+			frames.push(coordinates);
+		}
+		else
+			json.skipValue(token);
+	}
+
+	//a token of the coordinates: an array, or the first number of a position
+	private void coordinate(Frame frame, int token, PointBatch batch) throws IOException {
+		if (token == JsonTokenizer.BEGIN_ARRAY)
+			++frame.open;
+		else if (token == JsonTokenizer.END_ARRAY) {
+			if (--frame.open == 0)
+				frames.pop();
+		}
+		else if (token == JsonTokenizer.NUMBER) {
+			position(batch);
+			if (--frame.open == 0)
+				frames.pop();
+		}
+		else
+			throw json.malformed("expected a position");
+	}
+
+	//the longitude was just read, reads up to the end of the position
+	private void position(PointBatch batch) throws IOException {
+		double longitude = json.getNumber();
+		if (json.next() != JsonTokenizer.NUMBER)
+			throw json.malformed("expected longitude and latitude");
+		double latitude = json.getNumber();
+		if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180)
+			throw json.malformed("coordinate out of range");
+		double altitude = Double.NaN;
+		String fourth = null;
+		int token, count = 2;
+		while ((token = json.next()) != JsonTokenizer.END_ARRAY) {
+			if (token == JsonTokenizer.END)
+				throw json.malformed("unexpected end of file");
+			if (count == 2 && token == JsonTokenizer.NUMBER)
+				altitude = Timestamps.feet(json.getNumber());
+			else if (count == 3 && (token == JsonTokenizer.NUMBER || token == JsonTokenizer.STRING))
+				fourth = text(token);
+			else
+				json.skipValue(token);
+			++count;
+		}
+		long line = json.getLine();
+		int i = index++;
+		if (held.size == 0 && i < times.size)
+			emit(batch, latitude, longitude, altitude, times.time[i], line);
+		else if (held.size == 0 && fourth != null)
+			emit(batch, latitude, longitude, altitude, time(fourth), line);
+		else {
+			if (held.size == MAX_HELD)
+				throw json.malformed("more than " + MAX_HELD + " points of a feature wait for their times, "
+						+ "its properties have to come before its geometry");
+			held.add(latitude, longitude, altitude, fourth == null ? Long.MIN_VALUE : time(fourth), i, line);
+		}
+	}
+
+	private void emit(PointBatch batch, double lat, double lon, double alt, long time, long line) {
+		++points;
+		if (points > skip)
+			batch.add(lat, lon, alt, time, line, points);
+	}
+
+	private void startFeature(Frame frame) {
+		frames.push(frame);
+		times.clear();
+		coordTimes = false;
+		single = null;
+		index = 0;
+	}
+
+	//times the held points, which are emitted before anything read after them
+	private void endFeature() throws MalformedLineException {
+		for (int i = 0; i < held.size; ++i) {
+			if (held.index[i] < times.size)
+				held.time[i] = times.time[held.index[i]];
+			else if (held.time[i] == Long.MIN_VALUE && index == 1 && single != null)
+				held.time[i] = time(single);
+			else if (held.time[i] == Long.MIN_VALUE)
+				throw json.malformed("point without time");
+		}
+		if (held.size > 0)
+			drained = 0;
+	}
+
+	//the times and the time of the feature, other properties are skipped
+	private void properties() throws IOException {
+		int token;
+		while ((token = json.next()) == JsonTokenizer.NAME) {
+			String name = json.getText();
+			token = json.next();
+			if (name.equals("coordTimes") || (name.equals("times") && !coordTimes)) {
+				times.clear();
+				coordTimes = name.equals("coordTimes");
+				times(token);
+			}
+			else if ((name.equals("time") || (name.equals("timestamp") && single == null))
+					&& (token == JsonTokenizer.STRING || token == JsonTokenizer.NUMBER))
+				single = text(token);
+			else
+				json.skipValue(token);
+		}
+		if (token != JsonTokenizer.END_OBJECT)
+			throw json.malformed("expected a member name");
+	}
+
+	//flattened, parts of a MultiLineString run one after the other
+	private void times(int token) throws IOException {
+		if (token == JsonTokenizer.BEGIN_ARRAY) {
+			while ((token = json.next()) != JsonTokenizer.END_ARRAY) {
+				if (token == JsonTokenizer.END)
+					throw json.malformed("unexpected end of file");
+				times(token);
+			}
+		}
+		else if (token == JsonTokenizer.STRING || token == JsonTokenizer.NUMBER)
+			times.add(time(text(token)));
+		else
+			json.skipValue(token);
+	}
+
+	private String text(int token) throws MalformedLineException {
+		return token == JsonTokenizer.NUMBER ? Double.toString(json.getNumber()) : json.getText();
+	}
+
+	private long time(String value) throws MalformedLineException {
+		try {
+			return Timestamps.parse(value);
+		} catch (DateTimeException e) {
+			throw json.malformed("invalid time " + value);
+		}
+	}
+
+	/**
+	 * Number of points read so far, skipped ones included.
+	 */
+	@Override
+	public long getPosition() {
+		return points;
+	}
+
+	@Override
+	public long getLine() {
+		return json.getLine();
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	//an object or array open in the file
+	private static class Frame {
+		final int kind;
+		//of an object: a feature, or the file itself; of an array: of features
+		final boolean features;
+		String type;
+		//arrays of the coordinates not closed yet
+		int open;
+
+		Frame(int kind, boolean features) {
+			this.kind = kind;
+			this.features = features;
+		}
+	}
+
+	private static class Times {
+		long[] time = new long[64];
+		int size;
+
+		void add(long t) {
+			if (size == time.length)
+				time = Arrays.copyOf(time, 2 * size);
+			time[size++] = t;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+
+	//points read before their times, Long.MIN_VALUE while unknown
+	private static class Held {
+		double[] lat = new double[64];
+		double[] lon = new double[64];
+		double[] alt = new double[64];
+		long[] time = new long[64];
+		int[] index = new int[64];
+		long[] line = new long[64];
+		int size;
+
+		void add(double lat, double lon, double alt, long time, int index, long line) {
+			if (size == this.lat.length) {
+				int capacity = 2 * size;
+				this.lat = Arrays.copyOf(this.lat, capacity);
+				this.lon = Arrays.copyOf(this.lon, capacity);
+				this.alt = Arrays.copyOf(this.alt, capacity);
+				this.time = Arrays.copyOf(this.time, capacity);
+				this.index = Arrays.copyOf(this.index, capacity);
+				this.line = Arrays.copyOf(this.line, capacity);
+			}
+			this.lat[size] = lat;
+			this.lon[size] = lon;
+			this.alt[size] = alt;
+			this.time[size] = time;
+			this.index[size] = index;
+			this.line[size] = line;
+			++size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package format;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a FeatureCollection with a Point feature per point, the track name in its
+ * {@code plate} property, so {@link GeoJsonReader} reads it back one feature at a time.
+ */
+public class GeoJsonWriter implements TrackWriter {
+	private final Writer out;
+	private String plate = "\"\"";
+	private boolean first = true;
+
+	public GeoJsonWriter(OutputStream out) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+		this.out.write("{\"type\":\"FeatureCollection\",\"features\":[");
+	}
+
+	@Override
+	public void startTrack(String name) {
+		plate = string(name);
+	}
+
+	@Override
+	public void write(PointBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); ++i) {
+			out.write(first ? "\n" : ",\n");
+			first = false;
+			out.write("{\"type\":\"Feature\",\"properties\":{\"plate\":");
+			out.write(plate);
+			out.write(",\"time\":\"");
+			out.write(Timestamps.format(batch.getTime(i)));
+			out.write("\"},\"geometry\":{\"type\":\"Point\",\"coordinates\":[");
+			out.write(Double.toString(batch.getLongitude(i)));
+			out.write(',');
+			out.write(Double.toString(batch.getLatitude(i)));
+			if (!Double.isNaN(batch.getAltitude(i))) {
+				out.write(',');
+				out.write(Double.toString(Timestamps.meters(batch.getAltitude(i))));
+			}
+			out.write("]}}");
+		}
+	}
+
+	private static String string(String text) {
+		StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for (int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c < 0x20)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			out.write("\n]}\n");
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+public class GpxFormat implements TrackFormat {
+
+	@Override
+	public String getName() {
+		return "GPX";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Collections.singletonList("gpx");
+	}
+
+	@Override
+	public boolean sniff(byte[] head, int length) {
+		String text = TrackFormats.text(head, length);
+		return text.startsWith("<") && text.contains("<gpx");
+	}
+
+	@Override
+	public TrackReader open(File file, long position, long line) throws IOException {
+		return new GpxReader(file, position, line);
+	}
+
+	@Override
+	public TrackWriter createWriter(OutputStream out) throws IOException {
+		return new GpxWriter(out);
+	}
+}
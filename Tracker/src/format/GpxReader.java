@@ -0,0 +1,170 @@
+package format;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * GPX 1.0/1.1 reader on StAX. Track and route points are read in document order;
+ * elevations are converted to feet. Positions are point numbers, a resumed read skips
+ * that many points.
+ */
+public class GpxReader implements TrackReader {
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		//no DTDs nor external entities in the files we import
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private final String source;
+	private final InputStream in;
+	private final XMLStreamReader xml;
+	private long points;
+	private long line;
+
+	public GpxReader(File file) throws IOException {
+		this(file, 0, 0);
+	}
+
+	public GpxReader(File file, long position, long line) throws IOException {
+		source = file.getName();
+		in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		try {
+			xml = FACTORY.createXMLStreamReader(in);
+		} catch (XMLStreamException e) {
+			in.close();
+			throw malformed(e);
+		}
+		PointBatch skipped = new PointBatch(1);
+		while (points < position && readPoint(skipped))
+			skipped.clear();
+	}
+
+	@Override
+	public int read(PointBatch batch) throws IOException {
+		batch.clear();
+		while (!batch.isFull() && readPoint(batch))
+			;
+		return batch.size();
+	}
+
+	//moves to the next point and adds it, false at the end of the document
+	private boolean readPoint(PointBatch batch) throws IOException {
+		try {
+			while (xml.hasNext()) {
+				if (xml.next() == XMLStreamConstants.START_ELEMENT && isPoint(xml.getLocalName())) {
+					point(batch);
+					return true;
+				}
+			}
+			return false;
+		} catch (XMLStreamException e) {
+			throw malformed(e);
+		}
+	}
+
+	private void point(PointBatch batch) throws XMLStreamException, MalformedLineException {
+		String name = xml.getLocalName();
+		line = Math.max(line, xml.getLocation().getLineNumber());
+		double latitude;
+		double longitude;
+		try {
+			latitude = Double.parseDouble(xml.getAttributeValue(null, "lat").trim());
+			longitude = Double.parseDouble(xml.getAttributeValue(null, "lon").trim());
+		} catch (NullPointerException | NumberFormatException e) {
+			throw new MalformedLineException(source, line, "expected lat and lon attributes");
+		}
+		if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180)
+			throw new MalformedLineException(source, line, "coordinate out of range");
+		double altitude = Double.NaN;
+		String time = null;
+		int depth = 0;
+		while (true) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				++depth;
+				//extensions may have elements of the same name
+				if (depth == 1 && xml.getLocalName().equals("ele"))
+					altitude = number(xml.getElementText());
+				else if (depth == 1 && xml.getLocalName().equals("time"))
+					time = xml.getElementText();
+				else
+					continue;
+				--depth;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (depth == 0 && xml.getLocalName().equals(name))
+					break;
+				--depth;
+			}
+		}
+		if (time == null)
+			throw new MalformedLineException(source, line, "point without time");
+		long epochSecond;
+		try {
+			epochSecond = Timestamps.parse(time);
+		} catch (DateTimeException e) {
+			throw new MalformedLineException(source, line, "invalid time " + time.trim());
+		}
+		++points;
+		batch.add(latitude, longitude, altitude, epochSecond, line, points);
+	}
+
+	private double number(String text) throws MalformedLineException {
+		try {
+			return Timestamps.feet(Double.parseDouble(text.trim()));
+		} catch (NumberFormatException e) {
+			throw new MalformedLineException(source, line, "invalid elevation " + text.trim());
+		}
+	}
+
+	private static boolean isPoint(String name) {
+		return name.equals("trkpt") || name.equals("rtept");
+	}
+
+	private MalformedLineException malformed(XMLStreamException e) {
+		long at = e.getLocation() != null ? e.getLocation().getLineNumber() : line;
+		MalformedLineException malformed = new MalformedLineException(source, at, e.getMessage());
+		malformed.initCause(e);
+		return malformed;
+	}
+
+	/**
+	 * Number of points read so far, skipped ones included.
+	 */
+	@Override
+	public long getPosition() {
+		return points;
+	}
+
+	@Override
+	public long getLine() {
+		return line;
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package format;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes GPX 1.1 with a {@code trk} per track. Elevations are converted back to meters.
+ */
+public class GpxWriter implements TrackWriter {
+	private static final String NAMESPACE = "http://www.topografix.com/GPX/1/1";
+	private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+	private final OutputStream out;
+	private final XMLStreamWriter xml;
+	private boolean inTrack;
+
+	public GpxWriter(OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		try {
+			xml = FACTORY.createXMLStreamWriter(this.out, "UTF-8");
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeCharacters("\n");
+			xml.setDefaultNamespace(NAMESPACE);
+			xml.writeStartElement(NAMESPACE, "gpx");
+			xml.writeDefaultNamespace(NAMESPACE);
+			xml.writeAttribute("version", "1.1");
+			xml.writeAttribute("creator", "Tracker");
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void startTrack(String name) throws IOException {
+		try {
+			endTrack();
+			xml.writeCharacters("\n");
+			xml.writeStartElement(NAMESPACE, "trk");
+			xml.writeStartElement(NAMESPACE, "name");
+			xml.writeCharacters(name);
+			xml.writeEndElement();
+			xml.writeStartElement(NAMESPACE, "trkseg");
+			inTrack = true;
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void write(PointBatch batch) throws IOException {
+		if (!inTrack)
+			startTrack("Tracker");
+		try {
+			for (int i = 0; i < batch.size(); ++i) {
+				xml.writeCharacters("\n");
+				xml.writeStartElement(NAMESPACE, "trkpt");
+				xml.writeAttribute("lat", Double.toString(batch.getLatitude(i)));
+				xml.writeAttribute("lon", Double.toString(batch.getLongitude(i)));
+				if (!Double.isNaN(batch.getAltitude(i))) {
+					xml.writeStartElement(NAMESPACE, "ele");
+					xml.writeCharacters(Double.toString(Timestamps.meters(batch.getAltitude(i))));
+					xml.writeEndElement();
+				}
+				xml.writeStartElement(NAMESPACE, "time");
+				xml.writeCharacters(Timestamps.format(batch.getTime(i)));
+				xml.writeEndElement();
+				xml.writeEndElement();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void endTrack() throws XMLStreamException {
+		if (!inTrack)
+			return;
+		xml.writeEndElement();
+		xml.writeEndElement();
+		inTrack = false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			endTrack();
+			xml.writeCharacters("\n");
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			out.close();
+		}
+	}
+}
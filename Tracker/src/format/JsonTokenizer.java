@@ -0,0 +1,180 @@
+package format;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Minimal pull tokenizer for JSON text; object member names are returned as {@link #NAME} tokens.
+ */
+class JsonTokenizer {
+	static final int END = 0;
+	static final int BEGIN_OBJECT = 1;
+	static final int END_OBJECT = 2;
+	static final int BEGIN_ARRAY = 3;
+	static final int END_ARRAY = 4;
+	static final int NAME = 5;
+	static final int STRING = 6;
+	static final int NUMBER = 7;
+	static final int LITERAL = 8;
+
+	private final String source;
+	private final Reader in;
+	private final StringBuilder text = new StringBuilder();
+	private int pushedBack = -2;
+	private long line = 1;
+
+	JsonTokenizer(String source, Reader in) {
+		this.source = source;
+		this.in = in;
+	}
+
+	/**
+	 * @return the next token; strings, names, numbers and literals are in {@link #getText()}
+	 */
+	int next() throws IOException {
+		int c = skipSeparators();
+		text.setLength(0);
+		switch (c) {
+		case -1:
+			return END;
+		case '{':
+			return BEGIN_OBJECT;
+		case '}':
+			return END_OBJECT;
+		case '[':
+			return BEGIN_ARRAY;
+		case ']':
+			return END_ARRAY;
+		case '"':
+			string();
+			int after = skipWhitespace();
+			if (after == ':')
+				return NAME;
+			unread(after);
+			return STRING;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				literal(c);
+				return NUMBER;
+			}
+			if (c >= 'a' && c <= 'z') {
+				literal(c);
+				return LITERAL;
+			}
+			throw malformed("unexpected character '" + (char) c + "'");
+		}
+	}
+
+	/**
+	 * Skips the value starting with the token just returned.
+	 */
+	void skipValue(int token) throws IOException {
+		int depth = token == BEGIN_OBJECT || token == BEGIN_ARRAY ? 1 : 0;
+		while (depth > 0) {
+			int next = next();
+			if (next == BEGIN_OBJECT || next == BEGIN_ARRAY)
+				++depth;
+			else if (next == END_OBJECT || next == END_ARRAY)
+				--depth;
+			else if (next == END)
+				throw malformed("unexpected end of file");
+		}
+	}
+
+	String getText() {
+		return text.toString();
+	}
+
+	double getNumber() throws MalformedLineException {
+		try {
+			return Double.parseDouble(text.toString());
+		} catch (NumberFormatException e) {
+			throw malformed("invalid number " + text);
+		}
+	}
+
+	long getLine() {
+		return line;
+	}
+
+	MalformedLineException malformed(String message) {
+		return new MalformedLineException(source, line, message);
+	}
+
+	private void string() throws IOException {
+		while (true) {
+			int c = read();
+			if (c < 0)
+				throw malformed("unterminated string");
+			if (c == '"')
+				return;
+			if (c != '\\') {
+				text.append((char) c);
+				continue;
+			}
+			c = read();
+			switch (c) {
+			case 'b': text.append('\b'); break;
+			case 'f': text.append('\f'); break;
+			case 'n': text.append('\n'); break;
+			case 'r': text.append('\r'); break;
+			case 't': text.append('\t'); break;
+			case 'u':
+				int code = 0;
+				for (int i = 0; i < 4; ++i) {
+					int digit = Character.digit(read(), 16);
+					if (digit < 0)
+						throw malformed("invalid escape");
+					code = code * 16 + digit;
+				}
+				text.append((char) code);
+				break;
+			default:
+				if (c < 0)
+					throw malformed("unterminated string");
+				text.append((char) c);
+			}
+		}
+	}
+
+	private void literal(int first) throws IOException {
+		int c = first;
+		while (c >= 0 && c != ',' && c != ':' && c != ']' && c != '}' && !Character.isWhitespace(c)) {
+			text.append((char) c);
+			c = read();
+		}
+		unread(c);
+	}
+
+	private int skipSeparators() throws IOException {
+		int c;
+		do {
+			c = skipWhitespace();
+		} while (c == ',');
+		return c;
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c = read();
+		while (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\uFEFF')
+			c = read();
+		return c;
+	}
+
+	private int read() throws IOException {
+		int c;
+		if (pushedBack != -2) {
+			c = pushedBack;
+			pushedBack = -2;
+			return c;
+		}
+		c = in.read();
+		if (c == '\n')
+			++line;
+		return c;
+	}
+
+	private void unread(int c) {
+		pushedBack = c;
+	}
+}
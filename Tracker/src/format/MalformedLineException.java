@@ -0,0 +1,24 @@
+package format;
+
+import java.io.IOException;
+
+public class MalformedLineException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	private final String source;
+	private final long line;
+
+	public MalformedLineException(String source, long line, String message) {
+		super(source + " line " + line + ": " + message);
+		this.source = source;
+		this.line = line;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public long getLine() {
+		return line;
+	}
+}
@@ -0,0 +1,35 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+public class PltFormat implements TrackFormat {
+
+	@Override
+	public String getName() {
+		return "PLT";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Collections.singletonList("plt");
+	}
+
+	@Override
+	public boolean sniff(byte[] head, int length) {
+		return TrackFormats.text(head, length).startsWith("Geolife trajectory");
+	}
+
+	@Override
+	public TrackReader open(File file, long position, long line) throws IOException {
+		return new PltReader(file, position, line);
+	}
+
+	@Override
+	public TrackWriter createWriter(OutputStream out) throws IOException {
+		return new PltWriter(out);
+	}
+}
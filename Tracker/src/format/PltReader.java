@@ -0,0 +1,267 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * GeoLife PLT reader. The file is memory-mapped and scanned byte by byte; numbers,
+ * dates and times are decoded in place, so reading a point allocates nothing.
+ *
+ * Rows look like {@code 39.984702,116.318417,0,492,39744.1201851852,2008-10-23,02:53:04}
+ * (latitude, longitude, unused, altitude in feet, days since 1899, date, time in GMT).
+ */
+public class PltReader implements TrackReader {
+	//Line 1...6 are useless in this dataset
+	public static final int HEADER_LINES = 6;
+
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	//mantissas below 2^53 divided by an exact power of ten are correctly rounded
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private final String source;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int limit;
+	private int position;
+	private long line;
+
+	public PltReader(File file) throws IOException {
+		this(file, 0, 0);
+	}
+
+	/**
+	 * Resumes reading at a byte offset previously taken from {@link PointBatch#getOffset(int)};
+	 * {@code line} is the number of lines before that offset.
+	 */
+	public PltReader(File file, long offset, long line) throws IOException {
+		source = file.getName();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(source + " is too large to be mapped");
+			buffer = channel.map(MapMode.READ_ONLY, 0, size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		limit = buffer.limit();
+		if (offset > limit)
+			throw new IOException(source + " is shorter than the resume offset " + offset);
+		position = (int) offset;
+		this.line = line;
+		if (offset == 0) {
+			for (int i = 0; i < HEADER_LINES && position < limit; ++i)
+				skipLine();
+		}
+	}
+
+	@Override
+	public int read(PointBatch batch) throws MalformedLineException {
+		batch.clear();
+		while (!batch.isFull() && position < limit) {
+			int b = buffer.get(position);
+			if (b == '\n' || b == '\r')
+				skipLine();
+			else
+				readPoint(batch);
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Number of lines consumed so far, header included.
+	 */
+	@Override
+	public long getLine() {
+		return line;
+	}
+
+	/**
+	 * Byte offset of the next unread line.
+	 */
+	@Override
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	private void readPoint(PointBatch batch) throws MalformedLineException {
+		double latitude = number(1);
+		double longitude = number(2);
+		skipField(3);
+		double altitude = number(4);
+		skipField(5);
+		long day = date(6);
+		int second = time(7);
+		endOfLine();
+		if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180)
+			throw malformed("coordinate out of range");
+		batch.add(latitude, longitude, altitude, day * 86400 + second, line, position);
+	}
+
+	private double number(int field) throws MalformedLineException {
+		int start = position;
+		boolean negative = false;
+		int b = peek();
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			++position;
+		}
+		long mantissa = 0;
+		int significant = 0;
+		int fraction = 0;
+		boolean digits = false;
+		boolean point = false;
+		boolean exact = true;
+		while (true) {
+			b = peek();
+			if (b >= '0' && b <= '9') {
+				digits = true;
+				if (mantissa != 0 || b != '0')
+					++significant;
+				if (significant > 18)
+					exact = false;
+				else
+					mantissa = mantissa * 10 + (b - '0');
+				if (point)
+					++fraction;
+			} else if (b == '.' && !point) {
+				point = true;
+			} else if (b == 'e' || b == 'E' || ((b == '-' || b == '+') && !exact)) {
+				exact = false;
+			} else {
+				break;
+			}
+			++position;
+		}
+		if (!digits)
+			throw malformed("expected a number in field " + field);
+		int end = position;
+		separator(field);
+		if (!exact || fraction >= POW10.length || mantissa >= MAX_EXACT_MANTISSA)
+			return slowNumber(start, end, field);
+		double value = mantissa / POW10[fraction];
+		return negative ? -value : value;
+	}
+
+	//exponents and very long mantissas are rare enough to go through the JDK
+	private double slowNumber(int start, int end, int field) throws MalformedLineException {
+		byte[] text = new byte[end - start];
+		for (int i = 0; i < text.length; ++i)
+			text[i] = buffer.get(start + i);
+		try {
+			return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+		} catch (NumberFormatException e) {
+			throw malformed("expected a number in field " + field);
+		}
+	}
+
+	//yyyy-MM-dd as days since 1970-01-01
+	private long date(int field) throws MalformedLineException {
+		if (limit - position < 10 || buffer.get(position + 4) != '-' || buffer.get(position + 7) != '-')
+			throw malformed("expected a yyyy-MM-dd date in field " + field);
+		int year = digits(position, 4, field);
+		int month = digits(position + 5, 2, field);
+		int day = digits(position + 8, 2, field);
+		if (month < 1 || month > 12 || day < 1 || day > 31)
+			throw malformed("invalid date in field " + field);
+		position += 10;
+		separator(field);
+		return epochDay(year, month, day);
+	}
+
+	//HH:mm:ss as seconds of the day
+	private int time(int field) throws MalformedLineException {
+		if (limit - position < 8 || buffer.get(position + 2) != ':' || buffer.get(position + 5) != ':')
+			throw malformed("expected a HH:mm:ss time in field " + field);
+		int hour = digits(position, 2, field);
+		int minute = digits(position + 3, 2, field);
+		int second = digits(position + 6, 2, field);
+		if (hour > 23 || minute > 59 || second > 59)
+			throw malformed("invalid time in field " + field);
+		position += 8;
+		return hour * 3600 + minute * 60 + second;
+	}
+
+	private int digits(int at, int count, int field) throws MalformedLineException {
+		int value = 0;
+		for (int i = 0; i < count; ++i) {
+			int d = buffer.get(at + i) - '0';
+			if (d < 0 || d > 9)
+				throw malformed("unexpected character in field " + field);
+			value = value * 10 + d;
+		}
+		return value;
+	}
+
+	//days from civil, proleptic Gregorian calendar
+	static long epochDay(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	private void skipField(int field) throws MalformedLineException {
+		while (true) {
+			int b = peek();
+			if (b == ',' || b == '\n' || b == '\r' || b < 0)
+				break;
+			++position;
+		}
+		separator(field);
+	}
+
+	private void separator(int field) throws MalformedLineException {
+		if (peek() != ',')
+			throw malformed("expected 7 fields, found " + field);
+		++position;
+	}
+
+	private void endOfLine() throws MalformedLineException {
+		int b = peek();
+		while (b == ' ' || b == '\t' || b == '\r') {
+			++position;
+			b = peek();
+		}
+		if (b >= 0 && b != '\n')
+			throw malformed("expected 7 fields");
+		if (b == '\n')
+			++position;
+		++line;
+	}
+
+	private void skipLine() {
+		while (position < limit && buffer.get(position++) != '\n')
+			;
+		++line;
+	}
+
+	private int peek() {
+		return position < limit ? buffer.get(position) & 0xff : -1;
+	}
+
+	private MalformedLineException malformed(String message) {
+		return new MalformedLineException(source, line + 1, message);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
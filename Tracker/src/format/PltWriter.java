@@ -0,0 +1,70 @@
+package format;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes GeoLife PLT. The format has no track names, so the points of every track end
+ * up in one sequence under a single header.
+ */
+public class PltWriter implements TrackWriter {
+	//GeoLife marks a missing altitude with -777
+	private static final String NO_ALTITUDE = "-777";
+	//1899-12-30, day 0 of the fifth field
+	private static final long DAYS_BEFORE_EPOCH = 25569;
+
+	private final Writer out;
+	private boolean header;
+
+	public PltWriter(OutputStream out) {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+	}
+
+	@Override
+	public void startTrack(String name) throws IOException {
+		header(name);
+	}
+
+	@Override
+	public void write(PointBatch batch) throws IOException {
+		header("Tracker");
+		for (int i = 0; i < batch.size(); ++i) {
+			long time = batch.getTime(i);
+			String timestamp = Timestamps.format(time);
+			out.write(Double.toString(batch.getLatitude(i)));
+			out.write(',');
+			out.write(Double.toString(batch.getLongitude(i)));
+			out.write(",0,");
+			double altitude = batch.getAltitude(i);
+			out.write(Double.isNaN(altitude) ? NO_ALTITUDE : Double.toString(altitude));
+			out.write(',');
+			out.write(Double.toString(DAYS_BEFORE_EPOCH + time / 86400.0));
+			out.write(',');
+			out.write(timestamp, 0, 10);
+			out.write(',');
+			out.write(timestamp, 11, 8);
+			out.write("\r\n");
+		}
+	}
+
+	private void header(String name) throws IOException {
+		if (header)
+			return;
+		header = true;
+		out.write("Geolife trajectory\r\nWGS 84\r\nAltitude is in Feet\r\nReserved 3\r\n");
+		out.write("0,2,255," + name.replace(',', ' ') + ",0,0,2,8421376\r\n0\r\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			header("Tracker");
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package format;
+
+/**
+ * Reusable column buffer for parsed points. Times are UTC epoch seconds, a missing
+ * altitude is NaN, {@code line} is the position of the point in its source and
+ * {@code offset} the byte offset right after it, where a resumed read starts.
+ */
+public class PointBatch {
+	private final double[] latitude;
+	private final double[] longitude;
+	private final double[] altitude;
+	private final long[] time;
+	private final long[] line;
+	private final long[] offset;
+	private int size;
+
+	public PointBatch(int capacity) {
+		latitude = new double[capacity];
+		longitude = new double[capacity];
+		altitude = new double[capacity];
+		time = new long[capacity];
+		line = new long[capacity];
+		offset = new long[capacity];
+	}
+
+	public void add(double lat, double lon, double alt, long epochSecond, long sourceLine, long endOffset) {
+		latitude[size] = lat;
+		longitude[size] = lon;
+		altitude[size] = alt;
+		time[size] = epochSecond;
+		line[size] = sourceLine;
+		offset[size] = endOffset;
+		++size;
+	}
+
+	public void add(PointBatch from, int i) {
+		add(from.latitude[i], from.longitude[i], from.altitude[i], from.time[i], from.line[i], from.offset[i]);
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return latitude.length;
+	}
+
+	public boolean isFull() {
+		return size == latitude.length;
+	}
+
+	public double getLatitude(int i) {
+		return latitude[i];
+	}
+
+	public double getLongitude(int i) {
+		return longitude[i];
+	}
+
+	public double getAltitude(int i) {
+		return altitude[i];
+	}
+
+	public long getTime(int i) {
+		return time[i];
+	}
+
+	public long getLine(int i) {
+		return line[i];
+	}
+
+	public long getOffset(int i) {
+		return offset[i];
+	}
+}
@@ -0,0 +1,60 @@
+package format;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Timestamps of the text formats as UTC epoch seconds.
+ */
+class Timestamps {
+	//epoch seconds reach 1e11 in the year 5138, larger values are milliseconds
+	private static final double MILLISECONDS = 1e11;
+	private static final double METERS_PER_FOOT = 0.3048;
+
+	private Timestamps() {
+	}
+
+	/**
+	 * Accepts epoch seconds or milliseconds and ISO-8601 date-times, with {@code T} or a
+	 * space between date and time. Date-times without an offset are taken as UTC.
+	 * @throws DateTimeException if the text is none of these
+	 */
+	static long parse(String text) {
+		String s = text.trim();
+		if (s.isEmpty())
+			throw new DateTimeException("empty time");
+		if (s.indexOf(':') < 0 && s.indexOf('-', 1) < 0) {
+			try {
+				double value = Double.parseDouble(s);
+				return (long) Math.floor(Math.abs(value) >= MILLISECONDS ? value / 1000 : value);
+			} catch (NumberFormatException e) {
+				throw new DateTimeException("invalid time " + s);
+			}
+		}
+		if (s.length() > 10 && s.charAt(10) == ' ')
+			s = s.substring(0, 10) + 'T' + s.substring(11);
+		TemporalAccessor time = DateTimeFormatter.ISO_DATE_TIME.parseBest(s, ZonedDateTime::from, LocalDateTime::from);
+		if (time instanceof ZonedDateTime)
+			return ((ZonedDateTime) time).toEpochSecond();
+		return ((LocalDateTime) time).toEpochSecond(ZoneOffset.UTC);
+	}
+
+	//2008-10-23T02:53:04Z
+	static String format(long epochSecond) {
+		return Instant.ofEpochSecond(epochSecond).toString();
+	}
+
+	//points store altitudes in feet like the GeoLife files
+	static double feet(double meters) {
+		return meters / METERS_PER_FOOT;
+	}
+
+	static double meters(double feet) {
+		return feet * METERS_PER_FOOT;
+	}
+}
@@ -0,0 +1,32 @@
+package format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A file format points can be imported from, see {@link TrackFormats}.
+ */
+public interface TrackFormat {
+	public abstract String getName();
+
+	/**
+	 * Lower case extensions, without the dot.
+	 */
+	public abstract List<String> getExtensions();
+
+	/**
+	 * Whether the first bytes of a file look like this format, used when the extension is unknown.
+	 */
+	public abstract boolean sniff(byte[] head, int length);
+
+	/**
+	 * Opens the file at a position previously returned by {@link TrackReader#getPosition()}
+	 * or {@link PointBatch#getOffset(int)}, 0 for the beginning. {@code line} is the line
+	 * reached at that position.
+	 */
+	public abstract TrackReader open(File file, long position, long line) throws IOException;
+
+	public abstract TrackWriter createWriter(OutputStream out) throws IOException;
+}
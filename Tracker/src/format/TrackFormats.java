@@ -0,0 +1,102 @@
+package format;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the supported formats. A file is matched by its extension first and by
+ * its first bytes when no extension matches.
+ */
+public class TrackFormats {
+	private static final int SNIFF_LENGTH = 512;
+	private static final List<TrackFormat> FORMATS = new CopyOnWriteArrayList<TrackFormat>();
+
+	static {
+		register(new PltFormat());
+		register(new GpxFormat());
+		register(new GeoJsonFormat());
+		register(new ArchiveFormat());
+		register(new CsvFormat());
+	}
+
+	private TrackFormats() {
+	}
+
+	public static void register(TrackFormat format) {
+		FORMATS.add(format);
+	}
+
+	public static List<TrackFormat> getFormats() {
+		return FORMATS;
+	}
+
+	public static List<String> getExtensions() {
+		List<String> extensions = new ArrayList<String>();
+		for (TrackFormat format : FORMATS)
+			extensions.addAll(format.getExtensions());
+		return extensions;
+	}
+
+	/**
+	 * @return the format of the file, null if none is recognised
+	 */
+	public static TrackFormat forFile(File file) throws IOException {
+		TrackFormat format = forName(file.getName());
+		if (format != null)
+			return format;
+		byte[] head = new byte[SNIFF_LENGTH];
+		int length = 0;
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while (length < head.length && (read = in.read(head, length, head.length - length)) > 0)
+				length += read;
+		}
+		for (TrackFormat candidate : FORMATS) {
+			if (candidate.sniff(head, length))
+				return candidate;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the format registered for the extension of the name, null if none is
+	 */
+	public static TrackFormat forName(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot < 0)
+			return null;
+		String extension = name.substring(dot + 1).toLowerCase();
+		for (TrackFormat format : FORMATS) {
+			if (format.getExtensions().contains(extension))
+				return format;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the file opened with its format
+	 * @throws IOException if the format is not recognised
+	 */
+	public static TrackReader open(File file, long position, long line) throws IOException {
+		TrackFormat format = forFile(file);
+		if (format == null)
+			throw new IOException(file.getName() + " is not in a supported format");
+		return format.open(file, position, line);
+	}
+
+	//text formats: skip a byte order mark and white space
+	static String text(byte[] head, int length) {
+		int start = 0;
+		if (length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf)
+			start = 3;
+		while (start < length && Character.isWhitespace(head[start]))
+			++start;
+		return new String(head, start, length - start, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,35 @@
+package format;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Pull reader of the points of one track file, a batch at a time.
+ */
+public interface TrackReader extends Closeable {
+	/**
+	 * Clears the batch and fills it with the next points of the file.
+	 * @return the number of points read, 0 at the end of the file
+	 */
+	public abstract int read(PointBatch batch) throws IOException;
+
+	/**
+	 * Position to resume from after the last point read, see {@link TrackFormat#open}.
+	 */
+	public abstract long getPosition();
+
+	/**
+	 * Line (or point number for formats without lines) reached so far.
+	 */
+	public abstract long getLine();
+
+	public abstract String getSource();
+
+	/**
+	 * Name of the track the last batch belongs to, a batch never mixing tracks. Null
+	 * for formats holding a single unnamed track.
+	 */
+	public default String getTrack() {
+		return null;
+	}
+}
@@ -0,0 +1,17 @@
+package format;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes points to one file of a {@link TrackFormat}. Closing the writer ends the
+ * document and closes the underlying stream.
+ */
+public interface TrackWriter extends Closeable {
+	/**
+	 * Starts a new track; the points written next belong to it.
+	 */
+	public abstract void startTrack(String name) throws IOException;
+
+	public abstract void write(PointBatch batch) throws IOException;
+}
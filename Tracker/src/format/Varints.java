@@ -0,0 +1,34 @@
+package format;
+
+/**
+ * Zigzag LEB128 varints: small magnitudes of either sign take few bytes.
+ */
+class Varints {
+	//a 64 bit value takes at most 10 bytes
+	static final int MAX_LENGTH = 10;
+
+	private Varints() {
+	}
+
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes the zigzag encoding of the value at {@code position}.
+	 * @return the position after it
+	 */
+	static int write(byte[] buffer, int position, long value) {
+		long v = zigzag(value);
+		while ((v & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[position++] = (byte) v;
+		return position;
+	}
+}
@@ -0,0 +1,173 @@
+package ingest;
+
+import format.PointBatch;
+import model.dto.ThinningStatistics;
+
+/**
+ * Streaming thinning of one trajectory, applied between the reader and the writer.
+ * Points go through three rules in order: duplicate removal, minimum distance/interval
+ * from the last kept point, and an opening window simplification that keeps every
+ * dropped point within the tolerance of the segment replacing it.
+ *
+ * The simplification holds back at most one point per input point, so an output batch
+ * needs one slot more than the input batch; {@link #flush(PointBatch)} emits what is held
+ * at the end of the file.
+ */
+public class PointThinner {
+	private static final double EARTH_RADIUS = 6371008.8;
+	private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+	//a longer window is cut even if it is still within the tolerance
+	private static final int MAX_WINDOW = 128;
+
+	private final ThinningOptions options;
+	private final PointBatch window = new PointBatch(MAX_WINDOW);
+	private boolean hasPrevious;
+	private double previousLat;
+	private double previousLon;
+	private long previousTime;
+	private boolean hasKept;
+	private double keptLat;
+	private double keptLon;
+	private long keptTime;
+	private boolean hasAnchor;
+	private double anchorLat;
+	private double anchorLon;
+
+	private long pointsIn;
+	private long pointsOut;
+	private long duplicates;
+	private long tooClose;
+
+	public PointThinner(ThinningOptions options) {
+		this.options = options;
+	}
+
+	/**
+	 * Clears {@code out} and fills it with the points of {@code in} that survive, plus
+	 * points held back from earlier batches.
+	 */
+	public void process(PointBatch in, PointBatch out) {
+		out.clear();
+		for (int i = 0; i < in.size(); ++i) {
+			++pointsIn;
+			double lat = in.getLatitude(i);
+			double lon = in.getLongitude(i);
+			long time = in.getTime(i);
+			boolean duplicate = hasPrevious && ((lat == previousLat && lon == previousLon) || time == previousTime);
+			hasPrevious = true;
+			previousLat = lat;
+			previousLon = lon;
+			previousTime = time;
+			if (duplicate && options.getDropDuplicates()) {
+				++duplicates;
+				continue;
+			}
+			if (hasKept && ((options.getMinInterval() > 0 && time - keptTime < options.getMinInterval())
+					|| (options.getMinDistance() > 0 && distance(keptLat, keptLon, lat, lon) < options.getMinDistance()))) {
+				++tooClose;
+				continue;
+			}
+			hasKept = true;
+			keptLat = lat;
+			keptLon = lon;
+			keptTime = time;
+			simplify(in, i, out);
+		}
+	}
+
+	public void flush(PointBatch out) {
+		out.clear();
+		if (window.size() > 0)
+			emit(window, window.size() - 1, out);
+		window.clear();
+	}
+
+	//starts another trajectory, after a flush; the counts go on
+	public void reset() {
+		window.clear();
+		hasPrevious = false;
+		hasKept = false;
+		hasAnchor = false;
+	}
+
+	private void simplify(PointBatch in, int i, PointBatch out) {
+		if (options.getTolerance() <= 0 || !hasAnchor) {
+			emit(in, i, out);
+			return;
+		}
+		if (!withinTolerance(in.getLatitude(i), in.getLongitude(i))) {
+			//the previous point is the furthest the segment can reach
+			emit(window, window.size() - 1, out);
+			window.clear();
+		}
+		window.add(in, i);
+		if (window.isFull()) {
+			emit(window, window.size() - 1, out);
+			window.clear();
+		}
+	}
+
+	private boolean withinTolerance(double lat, double lon) {
+		//local plane around the anchor, good enough over a window
+		double scale = Math.cos(Math.toRadians(anchorLat));
+		double ex = (lon - anchorLon) * scale;
+		double ey = lat - anchorLat;
+		double length2 = ex * ex + ey * ey;
+		double tolerance = options.getTolerance() / METERS_PER_DEGREE;
+		for (int j = 0; j < window.size(); ++j) {
+			double px = (window.getLongitude(j) - anchorLon) * scale;
+			double py = window.getLatitude(j) - anchorLat;
+			double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, (px * ex + py * ey) / length2));
+			double dx = px - t * ex;
+			double dy = py - t * ey;
+			if (dx * dx + dy * dy > tolerance * tolerance)
+				return false;
+		}
+		return true;
+	}
+
+	private void emit(PointBatch from, int i, PointBatch out) {
+		out.add(from, i);
+		++pointsOut;
+		hasAnchor = true;
+		anchorLat = from.getLatitude(i);
+		anchorLon = from.getLongitude(i);
+	}
+
+	static double distance(double lat1, double lon1, double lat2, double lon2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLon = Math.toRadians(lon2 - lon1);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+				+ Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	public long getPointsIn() {
+		return pointsIn;
+	}
+
+	public long getPointsOut() {
+		return pointsOut;
+	}
+
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	public long getTooClose() {
+		return tooClose;
+	}
+
+	public long getSimplified() {
+		return pointsIn - pointsOut - duplicates - tooClose - window.size();
+	}
+
+	public ThinningStatistics getStatistics() {
+		return new ThinningStatistics(pointsIn, pointsOut, duplicates, tooClose, getSimplified());
+	}
+
+	@Override
+	public String toString() {
+		return getStatistics().toString();
+	}
+}
@@ -0,0 +1,46 @@
+package ingest;
+
+/**
+ * Settings of the ingest thinning stage. A zero threshold disables its rule.
+ */
+public class ThinningOptions {
+	public static final ThinningOptions NONE = new ThinningOptions(false, 0, 0, 0);
+
+	private final boolean dropDuplicates;
+	private final double minDistance;
+	private final long minInterval;
+	private final double tolerance;
+
+	/**
+	 * @param dropDuplicates drop fixes repeating the previous position or timestamp
+	 * @param minDistance meters a point has to be away from the last kept one
+	 * @param minInterval seconds a point has to be after the last kept one
+	 * @param tolerance maximum error in meters of the simplified trajectory
+	 */
+	public ThinningOptions(boolean dropDuplicates, double minDistance, long minInterval, double tolerance) {
+		this.dropDuplicates = dropDuplicates;
+		this.minDistance = minDistance;
+		this.minInterval = minInterval;
+		this.tolerance = tolerance;
+	}
+
+	public boolean isEnabled() {
+		return dropDuplicates || minDistance > 0 || minInterval > 0 || tolerance > 0;
+	}
+
+	public boolean getDropDuplicates() {
+		return dropDuplicates;
+	}
+
+	public double getMinDistance() {
+		return minDistance;
+	}
+
+	public long getMinInterval() {
+		return minInterval;
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+}
@@ -0,0 +1,95 @@
+package ingest;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import format.PointBatch;
+import format.TrackReader;
+
+/**
+ * Reads a file through a {@link PointThinner}. Without thinning the points are passed on as read.
+ * The thinner is flushed and reset where the track changes, so a batch only holds points
+ * of the track {@link #getTrack()} names.
+ */
+public class ThinningReader {
+	private final TrackReader reader;
+	private final PointThinner thinner;
+	private final PointBatch raw;
+	private long pointsRead;
+	private boolean finished;
+	//the raw batch starts another track and is processed on the next read
+	private boolean held;
+	private boolean started;
+	private String track;
+
+	public ThinningReader(TrackReader reader, ThinningOptions options, int batchSize) {
+		this.reader = reader;
+		this.thinner = options.isEnabled() ? new PointThinner(options) : null;
+		this.raw = thinner == null ? null : new PointBatch(batchSize);
+	}
+
+	/**
+	 * Batch size needed by {@link #read(PointBatch)} for a given read batch size.
+	 */
+	public static int outputSize(int batchSize) {
+		return batchSize + 1;
+	}
+
+	/**
+	 * Clears the batch and fills it with the next points to store.
+	 * @return the number of points, 0 at the end of the file
+	 */
+	public int read(PointBatch out) throws IOException {
+		if (thinner == null) {
+			int read = reader.read(out);
+			pointsRead += read;
+			track = reader.getTrack();
+			return read;
+		}
+		while (!finished) {
+			if (!held) {
+				int read = reader.read(raw);
+				pointsRead += read;
+				if (read == 0) {
+					finished = true;
+					thinner.flush(out);
+					return out.size();
+				}
+				if (started && !Objects.equals(reader.getTrack(), track)) {
+					//the points held back belong to the track before
+					held = true;
+					thinner.flush(out);
+					thinner.reset();
+					if (out.size() > 0)
+						return out.size();
+				}
+			}
+			held = false;
+			started = true;
+			track = reader.getTrack();
+			thinner.process(raw, out);
+			if (out.size() > 0)
+				return out.size();
+		}
+		out.clear();
+		return 0;
+	}
+
+	/**
+	 * Track of the points of the last batch, see {@link TrackReader#getTrack()}.
+	 */
+	public String getTrack() {
+		return track;
+	}
+
+	public long getPointsRead() {
+		return pointsRead;
+	}
+
+	/**
+	 * @return the reduction achieved so far, null without thinning
+	 */
+	public PointThinner getThinner() {
+		return thinner;
+	}
+}
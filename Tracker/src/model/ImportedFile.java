@@ -0,0 +1,102 @@
+package model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Manifest entry of an imported file. The committed offset and line are updated in the
+ * same transaction as the rows they cover, so they always point at the end of the
+ * last committed row.
+ */
+@Entity
+@Table(name = "imported_file")
+public class ImportedFile {
+	@Id
+	@Column(name = "path", length = 1024, updatable = false, nullable = false)
+	private String path;
+	
+	@Column(name = "plate")
+	private String plate;
+	
+	@Column(name = "size")
+	private long size;
+	
+	@Column(name = "modified")
+	private long modified;
+	
+	//SHA-256 of the first size bytes
+	@Column(name = "hash", length = 64)
+	private String hash;
+	
+	@Column(name = "committed_offset")
+	private long committedOffset;
+	
+	@Column(name = "committed_line")
+	private long committedLine;
+	
+	@Column(name = "complete")
+	private boolean complete;
+	
+	protected ImportedFile() {
+	}
+	
+	public ImportedFile(String path, String plate) {
+		this.path = path;
+		this.plate = plate;
+	}
+
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+	public void setModified(long modified) {
+		this.modified = modified;
+	}
+
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
+	public void setCommitted(long offset, long line) {
+		this.committedOffset = offset;
+		this.committedLine = line;
+	}
+
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+
+	public String getPath() {
+		return this.path;
+	}
+
+	public String getPlate() {
+		return this.plate;
+	}
+
+	public long getSize() {
+		return this.size;
+	}
+
+	public long getModified() {
+		return this.modified;
+	}
+
+	public String getHash() {
+		return this.hash;
+	}
+
+	public long getCommittedOffset() {
+		return this.committedOffset;
+	}
+
+	public long getCommittedLine() {
+		return this.committedLine;
+	}
+
+	public boolean isComplete() {
+		return this.complete;
+	}
+}
@@ -2,25 +2,35 @@ package model;
 
 import java.sql.Date;
 import java.sql.Time;
+import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import util.MortonCode;
+
 @Entity
+//indexes, the vehicle key and the timestamp and cell backfills are managed by util.SchemaMigration
 @Table(name = "location")
 public class Location {
 	@Id
-	@GeneratedValue
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "location_seq")
+	//ids are reserved in blocks so batched inserts don't hit the sequence per row
+	@SequenceGenerator(name = "location_seq", sequenceName = "location_seq", allocationSize = 50)
 	@Column(name = "location_id", updatable = false, nullable = false)
 	private Long locationId;
 	
-	@Column(name = "plate")
-	private String plate;
+	//see Vehicle, the plate is kept there once
+	@Column(name = "vehicle_id")
+	private Integer vehicleId;
 	
 	@Column(name = "latitude")
 	private Double latitude;
@@ -36,13 +46,28 @@ public class Location {
 	
 	@Column(name = "time")
 	private Time time;
+	
+	//date and time together, so datetime ranges can use an index
+	@Column(name = "timestamp")
+	private Timestamp timestamp;
+	
+	//grid cell of the position, see util.MortonCode
+	@Column(name = "cell")
+	private Long cell;
 
 	public void setLatitude(double latitude) {
 		this.latitude = latitude;
+		updateCell();
 	}
 
 	public void setLongitude(double longitude) {
 		this.longitude = longitude;
+		updateCell();
+	}
+	
+	private void updateCell() {
+		if (latitude != null && longitude != null)
+			cell = MortonCode.of(latitude, longitude);
 	}
 
 	public void setAltitude(double altitude) {
@@ -52,15 +77,27 @@ public class Location {
 	public void setDate(LocalDate date) {
 		Date d = java.sql.Date.valueOf(date);
 		this.date = d;
+		updateTimestamp();
 	}
 
 	public void setTime(LocalTime time) {
 		Time t = java.sql.Time.valueOf(time);
 		this.time = t;
+		updateTimestamp();
+	}
+	
+	private void updateTimestamp() {
+		if (date != null && time != null)
+			timestamp = Timestamp.valueOf(LocalDateTime.of(date.toLocalDate(), time.toLocalTime()));
 	}
 
-	public void setPlate(String plate) {
-		this.plate = plate;
+	//for locations read from elsewhere than the table, which generates it
+	public void setLocationId(Long locationId) {
+		this.locationId = locationId;
+	}
+
+	public void setVehicleId(Integer vehicleId) {
+		this.vehicleId = vehicleId;
 	}
 
 	public Double getLatitude() {
@@ -83,11 +120,19 @@ public class Location {
 		return this.time;
 	}
 	
+	public Timestamp getTimestamp() {
+		return this.timestamp;
+	}
+	
+	public Long getCell() {
+		return this.cell;
+	}
+	
 	public Long getLocationId() {
 		return this.locationId;
 	}
 	
-	public String getPlate() {
-		return this.plate;
+	public Integer getVehicleId() {
+		return this.vehicleId;
 	}
 }
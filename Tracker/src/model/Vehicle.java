@@ -0,0 +1,144 @@
+package model;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * A plate and the summary of its locations: how many, when first and last seen and
+ * the box around them. Locations refer to it by vehicle_id.
+ */
+@Entity
+//the unique plate index, the foreign key and the backfill are managed by util.SchemaMigration
+@Table(name = "vehicle")
+public class Vehicle {
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_seq")
+	@SequenceGenerator(name = "vehicle_seq", sequenceName = "vehicle_seq", allocationSize = 1)
+	@Column(name = "vehicle_id", updatable = false, nullable = false)
+	private Integer vehicleId;
+
+	@Column(name = "plate", nullable = false)
+	private String plate;
+
+	@Column(name = "point_count")
+	private long pointCount;
+
+	@Column(name = "first_seen")
+	private Timestamp firstSeen;
+
+	@Column(name = "last_seen")
+	private Timestamp lastSeen;
+
+	@Column(name = "south")
+	private Double south;
+
+	@Column(name = "west")
+	private Double west;
+
+	@Column(name = "north")
+	private Double north;
+
+	@Column(name = "east")
+	private Double east;
+
+	protected Vehicle() {
+	}
+
+	public Vehicle(Integer vehicleId, String plate) {
+		this.vehicleId = vehicleId;
+		this.plate = plate;
+	}
+
+	//counts a location into the summary
+	public void addPoint(double latitude, double longitude, Timestamp time) {
+		++pointCount;
+		south = south == null ? latitude : Math.min(south, latitude);
+		north = north == null ? latitude : Math.max(north, latitude);
+		west = west == null ? longitude : Math.min(west, longitude);
+		east = east == null ? longitude : Math.max(east, longitude);
+		addTime(time);
+	}
+
+	public void addTime(Timestamp time) {
+		if (time == null)
+			return;
+		if (firstSeen == null || time.before(firstSeen))
+			firstSeen = time;
+		if (lastSeen == null || time.after(lastSeen))
+			lastSeen = time;
+	}
+
+	//counts locations summarized elsewhere, a segment of the embedded store for instance
+	public void addPoints(long count, double south, double west, double north, double east, Timestamp first, Timestamp last) {
+		Vehicle other = new Vehicle(vehicleId, plate);
+		other.pointCount = count;
+		other.south = south;
+		other.west = west;
+		other.north = north;
+		other.east = east;
+		other.firstSeen = first;
+		other.lastSeen = last;
+		addSummary(other);
+	}
+
+	//merges the summary of other locations of the vehicle
+	public void addSummary(Vehicle other) {
+		pointCount += other.pointCount;
+		addTime(other.firstSeen);
+		addTime(other.lastSeen);
+		if (other.south != null) {
+			south = south == null ? other.south : Math.min(south, other.south);
+			north = north == null ? other.north : Math.max(north, other.north);
+			west = west == null ? other.west : Math.min(west, other.west);
+			east = east == null ? other.east : Math.max(east, other.east);
+		}
+	}
+
+	public Integer getVehicleId() {
+		return this.vehicleId;
+	}
+
+	public String getPlate() {
+		return this.plate;
+	}
+
+	public long getPointCount() {
+		return this.pointCount;
+	}
+
+	public Timestamp getFirstSeen() {
+		return this.firstSeen;
+	}
+
+	public Timestamp getLastSeen() {
+		return this.lastSeen;
+	}
+
+	public Double getSouth() {
+		return this.south;
+	}
+
+	public Double getWest() {
+		return this.west;
+	}
+
+	public Double getNorth() {
+		return this.north;
+	}
+
+	public Double getEast() {
+		return this.east;
+	}
+
+	@Override
+	public String toString() {
+		return plate + ": " + pointCount + " points from " + firstSeen + " to " + lastSeen;
+	}
+}
@@ -0,0 +1,40 @@
+package model.dto;
+
+/**
+ * An area between two latitudes and two longitudes, in degrees. West comes after east
+ * when the area runs over the antimeridian.
+ */
+public class BoundingBox {
+	private final double south;
+	private final double west;
+	private final double north;
+	private final double east;
+
+	public BoundingBox(double south, double west, double north, double east) {
+		this.south = south;
+		this.west = west;
+		this.north = north;
+		this.east = east;
+	}
+
+	public double getSouth() {
+		return south;
+	}
+
+	public double getWest() {
+		return west;
+	}
+
+	public double getNorth() {
+		return north;
+	}
+
+	public double getEast() {
+		return east;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + south + ", " + west + " - " + north + ", " + east + "]";
+	}
+}
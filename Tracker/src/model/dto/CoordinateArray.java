@@ -0,0 +1,52 @@
+package model.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latitudes and longitudes in two primitive arrays, 16 bytes a point.
+ */
+public class CoordinateArray {
+	private double[] latitudes;
+	private double[] longitudes;
+	private int size;
+
+	public CoordinateArray() {
+		this(1024);
+	}
+
+	public CoordinateArray(int capacity) {
+		latitudes = new double[Math.max(1, capacity)];
+		longitudes = new double[latitudes.length];
+	}
+
+	public void add(double lat, double lon) {
+		if (size == latitudes.length) {
+			latitudes = Arrays.copyOf(latitudes, 2 * size);
+			longitudes = Arrays.copyOf(longitudes, 2 * size);
+		}
+		latitudes[size] = lat;
+		longitudes[size] = lon;
+		++size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getLat(int i) {
+		return latitudes[i];
+	}
+
+	public double getLon(int i) {
+		return longitudes[i];
+	}
+
+	public List<Coordinate> toCoordinateList() {
+		List<Coordinate> coordinates = new ArrayList<Coordinate>(size);
+		for (int i = 0; i < size; ++i)
+			coordinates.add(new Coordinate(latitudes[i], longitudes[i]));
+		return coordinates;
+	}
+}
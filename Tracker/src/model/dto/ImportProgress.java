@@ -0,0 +1,61 @@
+package model.dto;
+
+public class ImportProgress {
+	private final int filesTotal;
+	private final int filesDone;
+	private final int filesFailed;
+	private final int filesSkipped;
+	private final long rowsParsed;
+	private final long rowsCommitted;
+	private final long elapsedNanos;
+
+	public ImportProgress(int filesTotal, int filesDone, int filesFailed, int filesSkipped, long rowsParsed, long rowsCommitted, long elapsedNanos) {
+		this.filesTotal = filesTotal;
+		this.filesDone = filesDone;
+		this.filesFailed = filesFailed;
+		this.filesSkipped = filesSkipped;
+		this.rowsParsed = rowsParsed;
+		this.rowsCommitted = rowsCommitted;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public int getFilesTotal() {
+		return filesTotal;
+	}
+
+	public int getFilesDone() {
+		return filesDone;
+	}
+
+	public int getFilesFailed() {
+		return filesFailed;
+	}
+
+	public int getFilesSkipped() {
+		return filesSkipped;
+	}
+
+	public long getRowsParsed() {
+		return rowsParsed;
+	}
+
+	public long getRowsCommitted() {
+		return rowsCommitted;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public double getRowsPerSecond() {
+		if (elapsedNanos <= 0)
+			return 0;
+		return rowsCommitted / (elapsedNanos / 1e9);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d/%d files (%d failed, %d unchanged), %d rows parsed, %d committed, %.0f rows/s",
+				filesDone, filesTotal, filesFailed, filesSkipped, rowsParsed, rowsCommitted, getRowsPerSecond());
+	}
+}
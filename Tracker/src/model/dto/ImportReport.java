@@ -0,0 +1,77 @@
+package model.dto;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ImportReport {
+	private final String source;
+	private final long rows;
+	private final long elapsedNanos;
+	private final List<String> failures;
+	private final boolean cancelled;
+	private final ThinningStatistics thinning;
+
+	public ImportReport(String source, long rows, long elapsedNanos) {
+		this(source, rows, elapsedNanos, Collections.emptyList(), false);
+	}
+
+	public ImportReport(String source, long rows, long elapsedNanos, List<String> failures, boolean cancelled) {
+		this(source, rows, elapsedNanos, failures, cancelled, null);
+	}
+
+	public ImportReport(String source, long rows, long elapsedNanos, List<String> failures, boolean cancelled, ThinningStatistics thinning) {
+		this.source = source;
+		this.rows = rows;
+		this.elapsedNanos = elapsedNanos;
+		this.failures = failures;
+		this.cancelled = cancelled;
+		this.thinning = thinning;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public List<String> getFailures() {
+		return failures;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	//null when the points were not thinned
+	public ThinningStatistics getThinning() {
+		return thinning;
+	}
+
+	public boolean isSuccessful() {
+		return failures.isEmpty() && !cancelled;
+	}
+
+	public double getRowsPerSecond() {
+		if (elapsedNanos <= 0)
+			return 0;
+		return rows / (elapsedNanos / 1e9);
+	}
+
+	@Override
+	public String toString() {
+		String summary = String.format("%s: %d rows in %.2f s (%.0f rows/s)", source, rows, elapsedNanos / 1e9, getRowsPerSecond());
+		if (cancelled)
+			summary += ", cancelled";
+		if (!failures.isEmpty())
+			summary += ", " + failures.size() + " failed";
+		if (thinning != null)
+			summary += ", thinned " + thinning;
+		return summary;
+	}
+}
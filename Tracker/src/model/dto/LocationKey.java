@@ -0,0 +1,42 @@
+package model.dto;
+
+import java.sql.Timestamp;
+
+import model.Location;
+
+/**
+ * Position of a location in time order: vehicle, then timestamp, then id to break ties.
+ */
+public class LocationKey {
+	private final Integer vehicleId;
+	private final Timestamp timestamp;
+	private final Long locationId;
+
+	public LocationKey(Integer vehicleId, Timestamp timestamp, Long locationId) {
+		this.vehicleId = vehicleId;
+		this.timestamp = timestamp;
+		this.locationId = locationId;
+	}
+
+	//the key of the location, to ask for the page after it
+	public static LocationKey of(Location location) {
+		return new LocationKey(location.getVehicleId(), location.getTimestamp(), location.getLocationId());
+	}
+
+	public Integer getVehicleId() {
+		return vehicleId;
+	}
+
+	public Timestamp getTimestamp() {
+		return timestamp;
+	}
+
+	public Long getLocationId() {
+		return locationId;
+	}
+
+	@Override
+	public String toString() {
+		return vehicleId + " " + timestamp + " #" + locationId;
+	}
+}
@@ -0,0 +1,56 @@
+package model.dto;
+
+/**
+ * Points the thinning stage read and kept, and why the others were dropped.
+ */
+public class ThinningStatistics {
+	private final long pointsIn;
+	private final long pointsOut;
+	private final long duplicates;
+	private final long tooClose;
+	private final long simplified;
+
+	public ThinningStatistics(long pointsIn, long pointsOut, long duplicates, long tooClose, long simplified) {
+		this.pointsIn = pointsIn;
+		this.pointsOut = pointsOut;
+		this.duplicates = duplicates;
+		this.tooClose = tooClose;
+		this.simplified = simplified;
+	}
+
+	//the counts of both, for the files of a job
+	public ThinningStatistics plus(ThinningStatistics other) {
+		return new ThinningStatistics(pointsIn + other.pointsIn, pointsOut + other.pointsOut,
+				duplicates + other.duplicates, tooClose + other.tooClose, simplified + other.simplified);
+	}
+
+	public long getPointsIn() {
+		return pointsIn;
+	}
+
+	public long getPointsOut() {
+		return pointsOut;
+	}
+
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	public long getTooClose() {
+		return tooClose;
+	}
+
+	public long getSimplified() {
+		return simplified;
+	}
+
+	public double getReduction() {
+		return pointsIn == 0 ? 0 : 100.0 * (pointsIn - pointsOut) / pointsIn;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d -> %d points (%.1f%% less: %d duplicates, %d below distance/interval, %d simplified)",
+				pointsIn, pointsOut, getReduction(), duplicates, tooClose, simplified);
+	}
+}
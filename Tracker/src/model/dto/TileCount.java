@@ -0,0 +1,49 @@
+package model.dto;
+
+import org.openstreetmap.gui.jmapviewer.OsmMercator;
+
+/**
+ * How many locations fall in a map tile, see util.TileGrid.
+ */
+public class TileCount {
+	private final int zoom;
+	private final int x;
+	private final int y;
+	private final long points;
+
+	public TileCount(int zoom, int x, int y, long points) {
+		this.zoom = zoom;
+		this.x = x;
+		this.y = y;
+		this.points = points;
+	}
+
+	public int getZoom() {
+		return zoom;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public long getPoints() {
+		return points;
+	}
+
+	//the area of the tile
+	public BoundingBox getBounds() {
+		OsmMercator mercator = OsmMercator.MERCATOR_256;
+		long size = OsmMercator.DEFAUL_TILE_SIZE;
+		return new BoundingBox(mercator.yToLat((y + 1) * size, zoom), mercator.xToLon(x * size, zoom),
+				mercator.yToLat(y * size, zoom), mercator.xToLon((x + 1) * size, zoom));
+	}
+
+	@Override
+	public String toString() {
+		return zoom + "/" + x + "/" + y + ": " + points;
+	}
+}
@@ -0,0 +1,107 @@
+package model.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The trajectory of one plate in parallel primitive arrays, in time order: 24 bytes a
+ * point where a {@link model.Location} and its {@link Coordinate} take over 200.
+ */
+public class TrajectoryBuffer {
+	private final String plate;
+	private double[] latitudes;
+	private double[] longitudes;
+	//UTC epoch seconds
+	private long[] times;
+	private int size;
+
+	public TrajectoryBuffer(String plate) {
+		this(plate, 1024);
+	}
+
+	public TrajectoryBuffer(String plate, int capacity) {
+		this.plate = plate;
+		latitudes = new double[Math.max(1, capacity)];
+		longitudes = new double[latitudes.length];
+		times = new long[latitudes.length];
+	}
+
+	public void add(double lat, double lon, long epochSecond) {
+		if (size == latitudes.length) {
+			latitudes = Arrays.copyOf(latitudes, 2 * size);
+			longitudes = Arrays.copyOf(longitudes, 2 * size);
+			times = Arrays.copyOf(times, 2 * size);
+		}
+		latitudes[size] = lat;
+		longitudes[size] = lon;
+		times[size] = epochSecond;
+		++size;
+	}
+
+	//drops the room left for more points, for a buffer that is kept
+	public void trim() {
+		if (size == latitudes.length || size == 0)
+			return;
+		latitudes = Arrays.copyOf(latitudes, size);
+		longitudes = Arrays.copyOf(longitudes, size);
+		times = Arrays.copyOf(times, size);
+	}
+
+	public String getPlate() {
+		return plate;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getLatitude(int i) {
+		return latitudes[i];
+	}
+
+	public double getLongitude(int i) {
+		return longitudes[i];
+	}
+
+	public long getEpochSecond(int i) {
+		return times[i];
+	}
+
+	//null when empty
+	public BoundingBox getBounds() {
+		if (size == 0)
+			return null;
+		double south = latitudes[0], north = south, west = longitudes[0], east = west;
+		for (int i = 1; i < size; ++i) {
+			south = Math.min(south, latitudes[i]);
+			north = Math.max(north, latitudes[i]);
+			west = Math.min(west, longitudes[i]);
+			east = Math.max(east, longitudes[i]);
+		}
+		return new BoundingBox(south, west, north, east);
+	}
+
+	public List<Coordinate> toCoordinateList() {
+		List<Coordinate> coordinates = new ArrayList<Coordinate>(size);
+		for (int i = 0; i < size; ++i)
+			coordinates.add(new Coordinate(latitudes[i], longitudes[i]));
+		return coordinates;
+	}
+
+	//the points of every buffer one after the other
+	public static List<Coordinate> toCoordinateList(List<TrajectoryBuffer> trajectories) {
+		List<Coordinate> coordinates = new ArrayList<Coordinate>((int) size(trajectories));
+		for (TrajectoryBuffer trajectory : trajectories)
+			for (int i = 0; i < trajectory.size; ++i)
+				coordinates.add(new Coordinate(trajectory.latitudes[i], trajectory.longitudes[i]));
+		return coordinates;
+	}
+
+	public static long size(List<TrajectoryBuffer> trajectories) {
+		long size = 0;
+		for (TrajectoryBuffer trajectory : trajectories)
+			size += trajectory.size;
+		return size;
+	}
+}
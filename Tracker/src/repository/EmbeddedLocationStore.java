@@ -0,0 +1,669 @@
+package repository;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import filter.Filter;
+import filter.FilterScope;
+import format.PointBatch;
+import model.Location;
+import model.Vehicle;
+import model.dto.CoordinateArray;
+import model.dto.LocationKey;
+import model.dto.TileCount;
+import util.TileGrid;
+
+/**
+ * Locations kept in files under a directory, to work on them without a database. Every
+ * vehicle has a folder of segments, each one a run of its locations sorted by time and
+ * stored as columns: times, latitudes, longitudes and altitudes. Segments are written
+ * once and read memory-mapped, a scan runs over the page cache without parsing and the
+ * filters are evaluated with {@link Filter#matches}.
+ *
+ * Points are appended to a buffer per vehicle, written as a segment when it holds
+ * {@link #SEGMENT_ROWS} points or on {@link #flush()}; only written points are read.
+ * Points within the time range of written segments are merged with those segments only,
+ * split again in segments of at most {@link #SEGMENT_ROWS} rows, so the segments of a
+ * vehicle follow each other in time and the ids of its locations are their positions
+ * in that order.
+ *
+ * A segment also holds the points of its rows by map tile at {@link TileGrid#MAX_ZOOM},
+ * counted as it is written, so {@link #getTileCounts} adds them up without reading a point.
+ *
+ * Layout: {@code vehicles.txt} lists the plates, the line number being the vehicle id,
+ * and {@code <id>/segments.txt} the live segments of a vehicle. The list is replaced
+ * atomically once a new segment is complete, files it does not name are left overs.
+ */
+public class EmbeddedLocationStore implements LocationStore, Closeable {
+	public static final int SEGMENT_ROWS = 1 << 16;
+	private static final int MAGIC = 0x54534547;
+	//version 1 had no tile counts, they are counted from the points when first asked for
+	private static final int VERSION = 2;
+	//magic, version, count, tiles, first and last time, south, west, north, east
+	private static final int HEADER = 64;
+	private static final String VEHICLES = "vehicles.txt";
+	private static final String SEGMENTS = "segments.txt";
+
+	private final Path directory;
+	private final Map<String, Track> byPlate = new HashMap<String, Track>();
+	//by vehicle id, replaced whole when a vehicle is added so scans can go without a lock
+	private volatile List<Track> tracks = Collections.emptyList();
+
+	public EmbeddedLocationStore(File directory) throws IOException {
+		this.directory = directory.toPath();
+		Files.createDirectories(this.directory);
+		Path vehicles = this.directory.resolve(VEHICLES);
+		List<Track> read = new ArrayList<Track>();
+		if (Files.exists(vehicles)) {
+			for (String plate : Files.readAllLines(vehicles, StandardCharsets.UTF_8)) {
+				Track track = new Track(read.size() + 1, plate);
+				track.open();
+				read.add(track);
+				byPlate.put(plate, track);
+			}
+		}
+		tracks = Collections.unmodifiableList(read);
+	}
+
+	public File getDirectory() {
+		return directory.toFile();
+	}
+
+	/**
+	 * Buffers the points of the plate, writing a segment each time the buffer is full.
+	 */
+	public synchronized void append(String plate, PointBatch batch) throws IOException {
+		Track track = byPlate.get(plate);
+		if (track == null)
+			track = addTrack(plate);
+		for (int i = 0; i < batch.size(); ++i) {
+			track.pending.add(batch, i);
+			if (track.pending.size == SEGMENT_ROWS)
+				track.write();
+		}
+	}
+
+	//writes the buffered points, from then on they are read
+	public synchronized void flush() throws IOException {
+		for (Track track : tracks)
+			track.write();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	@Override
+	public List<String> getPlates() {
+		List<String> plates = new ArrayList<String>();
+		for (Track track : tracks) {
+			if (track.segments.length > 0)
+				plates.add(track.plate);
+		}
+		Collections.sort(plates);
+		return plates;
+	}
+
+	//from the segment headers
+	@Override
+	public Vehicle getVehicle(String plate) {
+		Track track = find(plate);
+		if (track == null || track.segments.length == 0)
+			return null;
+		Vehicle vehicle = new Vehicle(track.vehicleId, plate);
+		for (Segment s : track.segments)
+			vehicle.addPoints(s.count, s.south, s.west, s.north, s.east, timestamp(s.first), timestamp(s.last));
+		return vehicle;
+	}
+
+	//the counts stored with the segments, added up
+	@Override
+	public List<TileCount> getTileCounts(String plate, int zoom) {
+		if (zoom < 0 || zoom > TileGrid.MAX_ZOOM)
+			throw new IllegalArgumentException("zoom " + zoom + " is not between 0 and " + TileGrid.MAX_ZOOM);
+		TileCounts counts = new TileCounts(zoom);
+		for (Track track : tracks) {
+			if (plate != null && !plate.equals(track.plate))
+				continue;
+			for (Segment s : track.segments)
+				counts.addAll(s.getTiles().at(zoom));
+		}
+		return counts.toList();
+	}
+
+	@Override
+	public CoordinateArray getCoordinates(Filter filter) {
+		CoordinateArray coordinates = new CoordinateArray();
+		Scan scan = new Scan(filter, null);
+		while (scan.next())
+			coordinates.add(scan.getLatitude(), scan.getLongitude());
+		return coordinates;
+	}
+
+	//reads the mapped segments as the stream is consumed, closing it is not needed
+	@Override
+	public Stream<Location> streamLocations(Filter filter) {
+		Scan scan = new Scan(filter, null);
+		Iterator<Location> locations = new Iterator<Location>() {
+			private boolean moved;
+			private boolean more;
+
+			@Override
+			public boolean hasNext() {
+				if (!moved) {
+					more = scan.next();
+					moved = true;
+				}
+				return more;
+			}
+
+			@Override
+			public Location next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				moved = false;
+				return scan.toLocation();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(locations, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	@Override
+	public List<Location> getLocationPage(Filter filter, LocationKey after, int size) {
+		List<Location> page = new ArrayList<Location>();
+		Scan scan = new Scan(filter, after);
+		while (page.size() < size && scan.next())
+			page.add(scan.toLocation());
+		return page;
+	}
+
+	@Override
+	public LocationCursor openCursor(Filter filter) {
+		return new Scan(filter, null);
+	}
+
+	private synchronized Track find(String plate) {
+		return byPlate.get(plate);
+	}
+
+	private Track addTrack(String plate) throws IOException {
+		if (plate == null || plate.isEmpty() || plate.indexOf('\n') >= 0 || plate.indexOf('\r') >= 0)
+			throw new IOException("invalid plate: " + plate);
+		Track track = new Track(tracks.size() + 1, plate);
+		Files.createDirectories(track.folder);
+		Files.write(directory.resolve(VEHICLES), Collections.singletonList(plate), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		List<Track> added = new ArrayList<Track>(tracks);
+		added.add(track);
+		tracks = Collections.unmodifiableList(added);
+		byPlate.put(plate, track);
+		return track;
+	}
+
+	private static Timestamp timestamp(long epochSecond) {
+		return Timestamp.valueOf(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+	}
+
+	private static long epochSecond(Timestamp timestamp) {
+		return timestamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+	}
+
+	private class Track {
+		final int vehicleId;
+		final String plate;
+		final Path folder;
+		final Columns pending = new Columns(1024);
+		//in time order, replaced whole when a segment is written
+		volatile Segment[] segments = new Segment[0];
+		private int nextNumber = 1;
+
+		Track(int vehicleId, String plate) {
+			this.vehicleId = vehicleId;
+			this.plate = plate;
+			this.folder = directory.resolve(String.valueOf(vehicleId));
+		}
+
+		//maps the listed segments and deletes the files of unfinished writes
+		void open() throws IOException {
+			Path list = folder.resolve(SEGMENTS);
+			List<String> names = Files.exists(list) ? Files.readAllLines(list, StandardCharsets.UTF_8) : Collections.<String>emptyList();
+			List<Segment> opened = new ArrayList<Segment>();
+			for (String name : names) {
+				if (!name.isEmpty())
+					opened.add(Segment.map(folder.resolve(name)));
+			}
+			segments = opened.toArray(new Segment[0]);
+			if (!Files.isDirectory(folder))
+				return;
+			try (Stream<Path> files = Files.list(folder)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					String name = file.getFileName().toString();
+					if (name.endsWith(".seg") || name.endsWith(".tmp")) {
+						nextNumber = Math.max(nextNumber, number(name) + 1);
+						if (!names.contains(name))
+							Files.deleteIfExists(file);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the pending points as segments of at most {@link #SEGMENT_ROWS} rows,
+		 * merged with the segments whose time range overlaps theirs and, when appended
+		 * at the end, with a last segment too small to stay on its own.
+		 */
+		void write() throws IOException {
+			if (pending.size == 0)
+				return;
+			pending.sort();
+			long first = pending.time[0], last = pending.time[pending.size - 1];
+			Segment[] current = segments;
+			//[from, to) overlap, on equal times the written points stay first
+			int from = 0;
+			while (from < current.length && current[from].last <= first)
+				++from;
+			int to = from;
+			while (to < current.length && current[to].first <= last)
+				++to;
+			if (from == current.length && from > 0 && current[from - 1].count + pending.size <= SEGMENT_ROWS)
+				--from;
+			Columns rows = pending;
+			if (from < to) {
+				Columns merged = new Columns(0);
+				for (int i = from; i < to; ++i)
+					merged.addAll(current[i]);
+				rows = merged.merge(pending);
+			}
+			List<Segment> written = new ArrayList<Segment>();
+			for (int start = 0; start < rows.size; start += SEGMENT_ROWS) {
+				Path file = folder.resolve(nextNumber++ + ".seg");
+				Path temporary = folder.resolve(file.getFileName() + ".tmp");
+				rows.write(temporary, start, Math.min(rows.size, start + SEGMENT_ROWS));
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+				written.add(Segment.map(file));
+			}
+			Segment[] next = new Segment[current.length - (to - from) + written.size()];
+			System.arraycopy(current, 0, next, 0, from);
+			for (int i = 0; i < written.size(); ++i)
+				next[from + i] = written.get(i);
+			System.arraycopy(current, to, next, from + written.size(), current.length - to);
+			saveList(next);
+			segments = next;
+			pending.clear();
+			//mapped files cannot be deleted on every system, those left are removed on open
+			for (int i = from; i < to; ++i)
+				current[i].file.toFile().delete();
+			QueryCache.getInstance().invalidate(plate, timestamp(first), timestamp(last));
+		}
+
+		private void saveList(Segment[] next) throws IOException {
+			List<String> names = new ArrayList<String>();
+			for (Segment s : next)
+				names.add(s.file.getFileName().toString());
+			Path temporary = folder.resolve(SEGMENTS + ".tmp");
+			Files.write(temporary, names, StandardCharsets.UTF_8);
+			Files.move(temporary, folder.resolve(SEGMENTS), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		private int number(String name) {
+			try {
+				return Integer.parseInt(name.substring(0, name.indexOf('.')));
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+	}
+
+	//a written segment, its columns read straight from the mapped file
+	private static class Segment {
+		final Path file;
+		final int count;
+		final long first;
+		final long last;
+		final double south;
+		final double west;
+		final double north;
+		final double east;
+		final LongBuffer time;
+		final DoubleBuffer latitude;
+		final DoubleBuffer longitude;
+		final DoubleBuffer altitude;
+		private final MappedByteBuffer map;
+		//version 1 segments store none
+		private final boolean storedTiles;
+		private TileCounts tiles;
+
+		private Segment(Path file, MappedByteBuffer map) throws IOException {
+			this.file = file;
+			this.map = map;
+			if (map.capacity() < HEADER || map.getInt(0) != MAGIC || (map.getInt(4) != VERSION && map.getInt(4) != 1))
+				throw new IOException(file + " is not a location segment");
+			storedTiles = map.getInt(4) == VERSION;
+			count = map.getInt(8);
+			if (map.capacity() != HEADER + 32L * count + (storedTiles ? 16L * map.getInt(12) : 0))
+				throw new IOException(file + " is truncated");
+			first = map.getLong(16);
+			last = map.getLong(24);
+			south = map.getDouble(32);
+			west = map.getDouble(40);
+			north = map.getDouble(48);
+			east = map.getDouble(56);
+			time = column(map, 0).asLongBuffer();
+			latitude = column(map, 1).asDoubleBuffer();
+			longitude = column(map, 2).asDoubleBuffer();
+			altitude = column(map, 3).asDoubleBuffer();
+		}
+
+		static Segment map(Path file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}
+		}
+
+		private ByteBuffer column(MappedByteBuffer map, int index) {
+			ByteBuffer column = map.duplicate();
+			column.position(HEADER + 8 * count * index);
+			column.limit(HEADER + 8 * count * (index + 1));
+			return column.slice();
+		}
+
+		synchronized TileCounts getTiles() {
+			if (tiles == null && storedTiles) {
+				ByteBuffer stored = map.duplicate();
+				stored.position(HEADER + 32 * count);
+				tiles = TileCounts.read(stored, map.getInt(12));
+			} else if (tiles == null) {
+				tiles = new TileCounts();
+				for (int i = 0; i < count; ++i)
+					tiles.add(latitude.get(i), longitude.get(i));
+			}
+			return tiles;
+		}
+
+		//first row at or after the time
+		int lowerBound(long epochSecond) {
+			int low = 0, high = count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (time.get(middle) < epochSecond)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			return low;
+		}
+	}
+
+	//growable columns of the points to write
+	private static class Columns {
+		long[] time;
+		double[] latitude;
+		double[] longitude;
+		double[] altitude;
+		int size;
+
+		Columns(int capacity) {
+			time = new long[capacity];
+			latitude = new double[capacity];
+			longitude = new double[capacity];
+			altitude = new double[capacity];
+		}
+
+		void add(long t, double lat, double lon, double alt) {
+			if (size == time.length) {
+				int capacity = Math.max(16, 2 * size);
+				time = Arrays.copyOf(time, capacity);
+				latitude = Arrays.copyOf(latitude, capacity);
+				longitude = Arrays.copyOf(longitude, capacity);
+				altitude = Arrays.copyOf(altitude, capacity);
+			}
+			time[size] = t;
+			latitude[size] = lat;
+			longitude[size] = lon;
+			altitude[size] = alt;
+			++size;
+		}
+
+		void add(PointBatch batch, int i) {
+			add(batch.getTime(i), batch.getLatitude(i), batch.getLongitude(i), batch.getAltitude(i));
+		}
+
+		void addAll(Segment s) {
+			for (int i = 0; i < s.count; ++i)
+				add(s.time.get(i), s.latitude.get(i), s.longitude.get(i), s.altitude.get(i));
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		//stable, points of the same time keep the order they came in
+		void sort() {
+			boolean sorted = true;
+			for (int i = 1; i < size && sorted; ++i)
+				sorted = time[i - 1] <= time[i];
+			if (sorted)
+				return;
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; ++i)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> Long.compare(time[a], time[b]));
+			Columns copy = new Columns(size);
+			for (int i : order)
+				copy.add(time[i], latitude[i], longitude[i], altitude[i]);
+			time = copy.time;
+			latitude = copy.latitude;
+			longitude = copy.longitude;
+			altitude = copy.altitude;
+		}
+
+		//both sorted, on equal times this one's points come first
+		Columns merge(Columns other) {
+			Columns merged = new Columns(size + other.size);
+			int i = 0, j = 0;
+			while (i < size || j < other.size) {
+				if (j == other.size || (i < size && time[i] <= other.time[j])) {
+					merged.add(time[i], latitude[i], longitude[i], altitude[i]);
+					++i;
+				} else {
+					merged.add(other.time[j], other.latitude[j], other.longitude[j], other.altitude[j]);
+					++j;
+				}
+			}
+			return merged;
+		}
+
+		//the rows from start to end, at most SEGMENT_ROWS of them, and their tile counts
+		void write(Path file, int start, int end) throws IOException {
+			int size = end - start;
+			TileCounts tiles = new TileCounts();
+			double south = 90, west = 180, north = -90, east = -180;
+			for (int i = start; i < end; ++i) {
+				south = Math.min(south, latitude[i]);
+				north = Math.max(north, latitude[i]);
+				west = Math.min(west, longitude[i]);
+				east = Math.max(east, longitude[i]);
+				tiles.add(latitude[i], longitude[i]);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER + 32 * size + 16 * tiles.size());
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(tiles.size())
+				.putLong(time[start]).putLong(time[end - 1])
+				.putDouble(south).putDouble(west).putDouble(north).putDouble(east);
+			buffer.asLongBuffer().put(time, start, size);
+			buffer.position(HEADER + 8 * size);
+			buffer.asDoubleBuffer().put(latitude, start, size);
+			buffer.position(HEADER + 16 * size);
+			buffer.asDoubleBuffer().put(longitude, start, size);
+			buffer.position(HEADER + 24 * size);
+			buffer.asDoubleBuffer().put(altitude, start, size);
+			buffer.position(HEADER + 32 * size);
+			tiles.write(buffer);
+			buffer.rewind();
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				channel.force(true);
+			}
+		}
+	}
+
+	/**
+	 * Walks the segments of the vehicles in id order, skipping the vehicles and the
+	 * parts of segments out of the filter's plate and time range, and tests the other
+	 * points with the filter.
+	 */
+	private class Scan implements LocationCursor {
+		private final Filter filter;
+		private final long from;
+		private final long to;
+		private final List<Track> scanned;
+		//the page key, points up to it are skipped
+		private final LocationKey after;
+		private long afterTime;
+		private int trackIndex = -1;
+		private Track track;
+		private Segment[] segments;
+		private int segmentIndex;
+		//id of the segment's first point
+		private long base;
+		private Segment segment;
+		private int row;
+		private int end;
+
+		Scan(Filter filter, LocationKey after) {
+			this.filter = filter;
+			this.after = after;
+			FilterScope scope = FilterScope.of(filter);
+			from = scope.getFrom() == null ? Long.MIN_VALUE : epochSecond(scope.getFrom());
+			to = scope.getTo() == null ? Long.MAX_VALUE : epochSecond(scope.getTo());
+			List<Track> all = tracks;
+			scanned = new ArrayList<Track>();
+			if (!scope.isEmpty()) {
+				for (Track t : all) {
+					if ((scope.getPlate() == null || scope.getPlate().equals(t.plate))
+							&& (after == null || t.vehicleId >= after.getVehicleId()))
+						scanned.add(t);
+				}
+			}
+			if (after != null)
+				afterTime = epochSecond(after.getTimestamp());
+		}
+
+		@Override
+		public boolean next() {
+			while (true) {
+				while (segment != null && ++row < end) {
+					long time = segment.time.get(row);
+					if (after != null && track.vehicleId == after.getVehicleId()
+							&& (time < afterTime || (time == afterTime && base + row <= after.getLocationId())))
+						continue;
+					if (filter == null || filter.matches(track.plate, segment.latitude.get(row), segment.longitude.get(row), time))
+						return true;
+				}
+				if (!nextSegment())
+					return false;
+			}
+		}
+
+		private boolean nextSegment() {
+			QueryCancellation.checkCurrent();
+			if (segment != null) {
+				base += segment.count;
+				segment = null;
+			}
+			while (true) {
+				if (segments == null || segmentIndex + 1 >= segments.length) {
+					if (++trackIndex >= scanned.size())
+						return false;
+					track = scanned.get(trackIndex);
+					segments = track.segments;
+					segmentIndex = -1;
+					base = 0;
+					continue;
+				}
+				Segment s = segments[++segmentIndex];
+				long start = after != null && track.vehicleId == after.getVehicleId() ? Math.max(from, afterTime) : from;
+				if (s.last < start || s.first > to) {
+					base += s.count;
+					continue;
+				}
+				segment = s;
+				row = s.lowerBound(start) - 1;
+				end = to == Long.MAX_VALUE ? s.count : s.lowerBound(to + 1);
+				return true;
+			}
+		}
+
+		Location toLocation() {
+			Location location = new Location();
+			long time = getEpochSecond();
+			location.setLocationId(base + row);
+			location.setVehicleId(track.vehicleId);
+			location.setLatitude(getLatitude());
+			location.setLongitude(getLongitude());
+			location.setAltitude(getAltitude());
+			location.setDate(LocalDate.ofEpochDay(Math.floorDiv(time, 86400)));
+			location.setTime(LocalTime.ofSecondOfDay(Math.floorMod(time, 86400)));
+			return location;
+		}
+
+		@Override
+		public String getPlate() {
+			return track.plate;
+		}
+
+		@Override
+		public double getLatitude() {
+			return segment.latitude.get(row);
+		}
+
+		@Override
+		public double getLongitude() {
+			return segment.longitude.get(row);
+		}
+
+		@Override
+		public double getAltitude() {
+			return segment.altitude.get(row);
+		}
+
+		@Override
+		public long getEpochSecond() {
+			return segment.time.get(row);
+		}
+
+		//the segments stay mapped for the store
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package repository;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import model.ImportedFile;
+import util.HibernateUtil;
+
+public class ImportedFileRepository {
+	
+	public ImportedFile getImportedFile(String path) {
+		try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+			return session.get(ImportedFile.class, path);
+		}
+	}
+	
+	//the rows already imported from the file are kept
+	public void deleteImportedFile(String path) {
+		Transaction transaction = null;
+		try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+			transaction = session.beginTransaction();
+			ImportedFile importedFile = session.get(ImportedFile.class, path);
+			if (importedFile != null)
+				session.delete(importedFile);
+			transaction.commit();
+		} catch (Exception e) {
+			if (transaction != null) {
+				transaction.rollback();
+			}
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package repository;
+
+import java.util.Arrays;
+
+import model.dto.TrajectoryBuffer;
+
+/**
+ * Largest-Triangle-Three-Buckets decimation of a trajectory read in time order, in one
+ * pass. The time from first to last point is split into buckets; the first and last
+ * points are kept and of every bucket the point making the largest triangle with the
+ * point kept before it and the average of the next bucket, which keeps the turns and
+ * spikes a plain sampling loses.
+ *
+ * Two buckets are held at a time. A bucket is a span of time, and a vehicle parked or
+ * densely sampled puts any number of points in it, so it keeps at most
+ * {@link #MAX_CANDIDATES} of them: a full bucket is halved, keeping of two neighbours
+ * the one further from the bucket's average. The average still counts every point.
+ */
+class LargestTriangleBuckets {
+	private static final double METERS_PER_DEGREE = 111320;
+	//points a bucket chooses from, even
+	private static final int MAX_CANDIDATES = 4096;
+
+	private final int buckets;
+	//squared, in degrees, points closer than it to the previous one are dropped
+	private final double minDistance2;
+	private TrajectoryBuffer out;
+	private long first;
+	private long span;
+	private boolean started;
+	//the point kept last
+	private double aLat;
+	private double aLon;
+	//the point read last, kept back until the next one shows it is not the last
+	private boolean held;
+	private double hLat;
+	private double hLon;
+	private long hTime;
+	private Bucket current = new Bucket();
+	private Bucket next = new Bucket();
+
+	/**
+	 * @param budget most points kept of a trajectory, at least 3
+	 * @param metersPerPixel ground size of a pixel, 0 to keep points however close
+	 */
+	LargestTriangleBuckets(int budget, double metersPerPixel) {
+		if (budget < 3)
+			throw new IllegalArgumentException("a budget of " + budget + " points, at least 3 are needed");
+		this.buckets = budget - 2;
+		double degrees = metersPerPixel / METERS_PER_DEGREE;
+		this.minDistance2 = degrees * degrees;
+	}
+
+	//starts a trajectory kept in out, times are expected from first to last
+	void start(TrajectoryBuffer out, long first, long last) {
+		this.out = out;
+		this.first = first;
+		this.span = Math.max(1, last - first + 1);
+		started = false;
+		held = false;
+		current.clear();
+		next.clear();
+	}
+
+	void add(double lat, double lon, long time) {
+		if (!started) {
+			keep(lat, lon, time);
+			started = true;
+			return;
+		}
+		if (held) {
+			double dLat = lat - hLat, dLon = lon - hLon;
+			if (dLat * dLat + dLon * dLon < minDistance2)
+				return;
+			push(hLat, hLon, hTime);
+		}
+		held = true;
+		hLat = lat;
+		hLon = lon;
+		hTime = time;
+	}
+
+	//ends the trajectory, keeping its last point
+	void finish() {
+		if (!held) {
+			current.clear();
+			next.clear();
+			return;
+		}
+		if (current.size > 0) {
+			if (next.size > 0)
+				select(current, next.averageLat(), next.averageLon());
+			else
+				select(current, hLat, hLon);
+		}
+		if (next.size > 0)
+			select(next, hLat, hLon);
+		keep(hLat, hLon, hTime);
+		held = false;
+		current.clear();
+		next.clear();
+	}
+
+	private void push(double lat, double lon, long time) {
+		int bucket = (int) Math.max(0, Math.min(buckets - 1, (time - first) * buckets / span));
+		if (next.size > 0 && bucket != next.index) {
+			//the next bucket is complete, the current one can be decided
+			if (current.size > 0)
+				select(current, next.averageLat(), next.averageLon());
+			Bucket done = current;
+			current = next;
+			next = done;
+			next.clear();
+		}
+		next.index = bucket;
+		next.add(lat, lon, time);
+	}
+
+	private void select(Bucket bucket, double cLat, double cLon) {
+		int best = 0;
+		double largest = -1;
+		for (int i = 0; i < bucket.size; ++i) {
+			//twice the area of the triangle
+			double area = Math.abs((aLon - cLon) * (bucket.lat[i] - aLat) - (aLon - bucket.lon[i]) * (cLat - aLat));
+			if (area > largest) {
+				largest = area;
+				best = i;
+			}
+		}
+		keep(bucket.lat[best], bucket.lon[best], bucket.time[best]);
+		bucket.clear();
+	}
+
+	private void keep(double lat, double lon, long time) {
+		out.add(lat, lon, time);
+		aLat = lat;
+		aLon = lon;
+	}
+
+	private static class Bucket {
+		double[] lat = new double[64];
+		double[] lon = new double[64];
+		long[] time = new long[64];
+		//candidates held, of count points added
+		int size;
+		long count;
+		int index;
+		double sumLat;
+		double sumLon;
+
+		void add(double lat, double lon, long time) {
+			if (size == MAX_CANDIDATES)
+				halve();
+			else if (size == this.lat.length) {
+				this.lat = Arrays.copyOf(this.lat, 2 * size);
+				this.lon = Arrays.copyOf(this.lon, 2 * size);
+				this.time = Arrays.copyOf(this.time, 2 * size);
+			}
+			this.lat[size] = lat;
+			this.lon[size] = lon;
+			this.time[size] = time;
+			++size;
+			++count;
+			sumLat += lat;
+			sumLon += lon;
+		}
+
+		//the point further from the average is the likelier to make the largest triangle
+		private void halve() {
+			double cLat = averageLat(), cLon = averageLon();
+			int kept = 0;
+			for (int i = 0; i < size; i += 2) {
+				double d0 = (lat[i] - cLat) * (lat[i] - cLat) + (lon[i] - cLon) * (lon[i] - cLon);
+				double d1 = (lat[i + 1] - cLat) * (lat[i + 1] - cLat) + (lon[i + 1] - cLon) * (lon[i + 1] - cLon);
+				int j = d0 >= d1 ? i : i + 1;
+				lat[kept] = lat[j];
+				lon[kept] = lon[j];
+				time[kept] = time[j];
+				++kept;
+			}
+			size = kept;
+		}
+
+		double averageLat() {
+			return sumLat / count;
+		}
+
+		double averageLon() {
+			return sumLon / count;
+		}
+
+		void clear() {
+			size = 0;
+			count = 0;
+			sumLat = 0;
+			sumLon = 0;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package repository;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import model.Location;
+import util.HibernateUtil;
+
+/**
+ * Writes locations through a single session. Inserts are flushed in JDBC batches
+ * and committed in chunks, clearing the session after each batch so the
+ * persistence context does not grow with the size of the import.
+ *
+ * Call {@link #finish()} to commit the last chunk; closing the writer without it
+ * rolls back whatever was not committed yet. A checkpoint entity, when set, is
+ * merged in every commit so it always describes the committed rows, and so are the
+ * summaries of the vehicles written to.
+ */
+public class LocationBatchWriter implements AutoCloseable {
+	//must match hibernate.jdbc.batch_size
+	public static final int BATCH_SIZE = HibernateUtil.BATCH_SIZE;
+	public static final int CHUNK_SIZE = 100 * BATCH_SIZE;
+
+	private final Session session;
+	private final VehicleStats stats = new VehicleStats();
+	private Transaction transaction;
+	private Object checkpoint;
+	private int chunkSize = CHUNK_SIZE;
+	private int chunkRows;
+	private long committedRows;
+
+	LocationBatchWriter() {
+		session = HibernateUtil.getSessionFactory().openSession();
+	}
+
+	public void write(Location location) {
+		if (transaction == null)
+			transaction = session.beginTransaction();
+		session.save(location);
+		stats.add(location);
+		++chunkRows;
+		if (chunkRows % BATCH_SIZE == 0) {
+			//send the JDBC batch and detach the saved entities
+			session.flush();
+			session.clear();
+		}
+		if (chunkRows >= chunkSize)
+			commit();
+	}
+
+	public void commit() {
+		if (transaction == null)
+			return;
+		if (checkpoint != null)
+			session.merge(checkpoint);
+		session.flush();
+		session.clear();
+		stats.apply(session);
+		transaction.commit();
+		transaction = null;
+		VehicleCatalog.getInstance().added(stats.getAdded());
+		stats.clear();
+		committedRows += chunkRows;
+		chunkRows = 0;
+	}
+
+	public void finish() {
+		//the checkpoint is saved even when there was nothing left to write
+		if (transaction == null && checkpoint != null)
+			transaction = session.beginTransaction();
+		commit();
+	}
+
+	public void setCheckpoint(Object checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Rows after which {@link #write(Location)} commits on its own, Integer.MAX_VALUE
+	 * to only commit when asked.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public void rollback() {
+		if (transaction != null && transaction.isActive())
+			transaction.rollback();
+		transaction = null;
+		chunkRows = 0;
+		stats.clear();
+		session.clear();
+	}
+
+	public long getCommittedRows() {
+		return committedRows;
+	}
+
+	public long getPendingRows() {
+		return chunkRows;
+	}
+
+	@Override
+	public void close() {
+		try {
+			rollback();
+		} finally {
+			session.close();
+		}
+	}
+}
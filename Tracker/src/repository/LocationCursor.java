@@ -0,0 +1,28 @@
+package repository;
+
+/**
+ * Forward-only cursor over the locations matching a filter, ordered by vehicle and
+ * time, see {@link LocationStore#openCursor(filter.Filter)}.
+ */
+public interface LocationCursor extends AutoCloseable {
+	/**
+	 * Moves to the next row.
+	 * @return false after the last row
+	 */
+	public abstract boolean next();
+
+	public abstract String getPlate();
+
+	public abstract double getLatitude();
+
+	public abstract double getLongitude();
+
+	//NaN when missing
+	public abstract double getAltitude();
+
+	//UTC epoch seconds of the date and time
+	public abstract long getEpochSecond();
+
+	@Override
+	public abstract void close();
+}
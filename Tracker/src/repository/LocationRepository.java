@@ -1,15 +1,41 @@
 package repository;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 import filter.Filter;
+import filter.FilterQuery;
 import model.Location;
+import model.Vehicle;
+import model.dto.CoordinateArray;
+import model.dto.LocationKey;
+import model.dto.TileCount;
 import util.HibernateUtil;
+import util.PartitionManager;
+import util.TileGrid;
 
-public class LocationRepository {
+public class LocationRepository implements LocationStore {
+	private static final String COPY_LOCATIONS =
+			"COPY location (vehicle_id, latitude, longitude, altitude, date, time, timestamp, cell) FROM STDIN WITH (FORMAT csv)";
+	//time order of a vehicle's history, served by location_vehicle_timestamp_id_idx
+	static final String TIME_ORDER = " ORDER BY l.vehicleId, l.timestamp, l.locationId";
 	
 	public void saveLocation(Location location) {
         Transaction transaction = null;
@@ -28,21 +54,277 @@ public class LocationRepository {
         }
     }
 	
-	public List<String> getPlates(){
+	public LocationBatchWriter openBatchWriter() {
+		return new LocationBatchWriter();
+	}
+	
+	//every location when the filter is null
+	public LocationCursor openCursor(Filter filter) {
+		return new QueryLocationCursor(filter);
+	}
+	
+	public long saveLocations(Stream<Location> locations) {
+		try (LocationBatchWriter writer = openBatchWriter()) {
+			locations.forEachOrdered(writer::write);
+			writer.finish();
+			return writer.getCommittedRows();
+		}
+	}
+	
+	/**
+	 * Streams CSV rows (vehicle_id, latitude, longitude, altitude, date, time, timestamp, cell) straight into
+	 * the location table with COPY, in a single transaction. Ids are taken from
+	 * location_seq by the server. The checkpoint, if any, is asked for once the rows
+	 * are sent and merged in the same transaction, as are the vehicle summaries the
+	 * reader filled in while it was read.
+	 */
+	public long copyLocations(Reader csv, VehicleStats stats, Supplier<Object> checkpoint) throws IOException {
+		Transaction transaction = null;
 		try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            return session.createQuery("select distinct plate from Location", String.class).list();
-        }
+			transaction = session.beginTransaction();
+			long rows = session.doReturningWork(connection -> {
+				CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+				try {
+					return copyManager.copyIn(COPY_LOCATIONS, csv, 1 << 16);
+				} catch (IOException e) {
+					throw new SQLException("COPY aborted: " + e.getMessage(), e);
+				}
+			});
+			if (checkpoint != null)
+				session.merge(checkpoint.get());
+			stats.apply(session);
+			transaction.commit();
+			VehicleCatalog.getInstance().added(stats.getAdded());
+			return rows;
+		} catch (RuntimeException e) {
+			if (transaction != null && transaction.isActive())
+				transaction.rollback();
+			if (e.getCause() instanceof SQLException && e.getCause().getCause() instanceof IOException)
+				throw (IOException) e.getCause().getCause();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Detaches the partitions of the months before the given one, for retention. Each
+	 * detach only changes the catalog, then {@link #subtractMonth} takes the month out
+	 * of the vehicle summaries and tile counts.
+	 * @return the detached tables, still holding their rows
+	 */
+	public List<String> detachMonthsBefore(YearMonth month) {
+		List<String> tables = new ArrayList<String>();
+		for (YearMonth partition : PartitionManager.getPartitions()) {
+			if (!partition.isBefore(month))
+				break;
+			String table = PartitionManager.detach(partition);
+			if (table == null)
+				continue;
+			tables.add(table);
+			subtractMonth(partition);
+		}
+		VehicleCatalog.getInstance().reload();
+		QueryCache.getInstance().clear();
+		return tables;
+	}
+	
+	/**
+	 * Takes a month no longer in the location table out of the vehicle point counts and
+	 * the tile counts, from its month_tile_count rows, which the imports keep. The cost
+	 * goes with the tiles its points fell in, its rows are not read. The first and last
+	 * times of its vehicles are looked up again on location_vehicle_timestamp_id_idx, the
+	 * vehicle bounds may still take in the month.
+	 */
+	private void subtractMonth(YearMonth month) {
+		String counts = "SELECT vehicle_id, tile_x AS x, tile_y AS y, points FROM month_tile_count WHERE month = :month";
+		String vehicles = "SELECT DISTINCT vehicle_id FROM month_tile_count WHERE month = :month";
+		Date day = Date.valueOf(month.atDay(1));
+		Transaction transaction = null;
+		try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+			transaction = session.beginTransaction();
+			session.createNativeQuery("UPDATE vehicle v SET point_count = v.point_count - d.points FROM "
+					+ "(SELECT vehicle_id, sum(points) AS points FROM month_tile_count WHERE month = :month GROUP BY vehicle_id) d "
+					+ "WHERE v.vehicle_id = d.vehicle_id")
+				.setParameter("month", day)
+				.executeUpdate();
+			session.createNativeQuery("UPDATE vehicle v SET "
+					+ "first_seen = (SELECT min(l.timestamp) FROM location l WHERE l.vehicle_id = v.vehicle_id), "
+					+ "last_seen = (SELECT max(l.timestamp) FROM location l WHERE l.vehicle_id = v.vehicle_id) "
+					+ "WHERE v.vehicle_id IN (" + vehicles + ")")
+				.setParameter("month", day)
+				.executeUpdate();
+			session.createNativeQuery("UPDATE tile_count c SET points = c.points - d.points FROM (" + TileGrid.rollupSql(counts) + ") d "
+					+ "WHERE c.vehicle_id = d.vehicle_id AND c.zoom = d.zoom AND c.tile_x = d.tile_x AND c.tile_y = d.tile_y")
+				.setParameter("month", day)
+				.executeUpdate();
+			session.createNativeQuery("DELETE FROM tile_count WHERE points <= 0 AND vehicle_id IN (" + vehicles + ")")
+				.setParameter("month", day)
+				.executeUpdate();
+			session.createNativeQuery("DELETE FROM month_tile_count WHERE month = :month")
+				.setParameter("month", day)
+				.executeUpdate();
+			transaction.commit();
+		} catch (RuntimeException e) {
+			if (transaction != null && transaction.isActive())
+				transaction.rollback();
+			throw e;
+		}
+	}
+	
+	//from the vehicle catalog, the locations are not read
+	public List<String> getPlates(){
+		return VehicleCatalog.getInstance().getPlates();
 	}
 	
+	public Vehicle getVehicle(String plate) {
+		return VehicleCatalog.getInstance().get(plate);
+	}
+	
+	//from tile_count, the locations are not read
+	@SuppressWarnings("try")
+	public List<TileCount> getTileCounts(String plate, int zoom) {
+		if (zoom < 0 || zoom > TileGrid.MAX_ZOOM)
+			throw new IllegalArgumentException("zoom " + zoom + " is not between 0 and " + TileGrid.MAX_ZOOM);
+		try (Session session = HibernateUtil.getSessionFactory().openSession();
+				QueryCancellation.Registration registration = QueryCancellation.register(session)) {
+			NativeQuery<?> query;
+			if (plate == null)
+				query = session.createNativeQuery("SELECT tile_x, tile_y, sum(points) FROM tile_count WHERE zoom = :zoom "
+						+ "GROUP BY tile_x, tile_y ORDER BY tile_x, tile_y");
+			else
+				query = session.createNativeQuery("SELECT tile_x, tile_y, points FROM tile_count "
+						+ "WHERE vehicle_id = (SELECT vehicle_id FROM vehicle WHERE plate = :plate) AND zoom = :zoom ORDER BY tile_x, tile_y")
+					.setParameter("plate", plate);
+			query.setParameter("zoom", zoom);
+			List<TileCount> tiles = new ArrayList<TileCount>();
+			for (Object row : query.list()) {
+				Object[] columns = (Object[]) row;
+				tiles.add(new TileCount(zoom, ((Number) columns[0]).intValue(), ((Number) columns[1]).intValue(), ((Number) columns[2]).longValue()));
+			}
+			return tiles;
+		}
+	}
+	
+	/**
+	 * Streams the locations matching the filter, all of them when it is null, through a
+	 * server-side cursor fetching {@link QueryLocationCursor#FETCH_SIZE} rows at a time. The
+	 * entities come from a stateless session, nothing keeps them once consumed, so any
+	 * result size fits in bounded memory. The stream must be closed.
+	 */
+	public Stream<Location> streamLocations(Filter filter) {
+		StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
+		QueryCancellation.Registration registration = null;
+		try {
+			registration = QueryCancellation.register(session);
+			//the driver only uses a cursor inside a transaction
+			Transaction transaction = session.beginTransaction();
+			FilterQuery where = FilterQuery.of(filter);
+			Query<Location> query = bind(session.createQuery("SELECT l FROM Location l" + where.getWhere() + TIME_ORDER, Location.class), where);
+			query.setFetchSize(QueryLocationCursor.FETCH_SIZE);
+			query.setReadOnly(true);
+			QueryCancellation.Registration registered = registration;
+			return query.stream().peek(location -> QueryCancellation.checkCurrent()).onClose(() -> {
+				try {
+					if (transaction.isActive())
+						transaction.rollback();
+				} finally {
+					registered.close();
+					session.close();
+				}
+			});
+		} catch (RuntimeException e) {
+			if (registration != null)
+				registration.close();
+			session.close();
+			throw e;
+		}
+	}
+	
+	//loads the whole table, see streamLocations
 	public List<Location> getAll() {
         try (Session session = HibernateUtil.getSessionFactory().openSession()) {
             return session.createQuery("from Location", Location.class).list();
         }
     }
 	
+    /**
+     * Only latitude and longitude, read through a stateless session in pages of
+     * {@link QueryLocationCursor#FETCH_SIZE} rows; no entity is built or tracked.
+     */
+    @SuppressWarnings("try")
+    public CoordinateArray getCoordinates(Filter filter) {
+        try (StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
+                QueryCancellation.Registration registration = QueryCancellation.register(session)) {
+            //the driver only pages inside a transaction
+            Transaction transaction = session.beginTransaction();
+            try {
+                FilterQuery where = FilterQuery.of(filter);
+                Query<Object[]> query = bind(session.createQuery("SELECT l.latitude, l.longitude FROM Location l" + where.getWhere() + TIME_ORDER, Object[].class), where);
+                query.setFetchSize(QueryLocationCursor.FETCH_SIZE);
+                query.setReadOnly(true);
+                CoordinateArray coordinates = new CoordinateArray();
+                try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                    while (results.next()) {
+                        coordinates.add((Double) results.get(0), (Double) results.get(1));
+                        if (coordinates.size() % QueryLocationCursor.FETCH_SIZE == 0)
+                            QueryCancellation.checkCurrent();
+                    }
+                }
+                return coordinates;
+            } finally {
+                transaction.rollback();
+            }
+        }
+    }
+    
+    //loads the whole result, see streamLocations
+    @SuppressWarnings("try")
     public List<Location> getLocations(Filter filter) {
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            return session.createQuery("SELECT l FROM Location l WHERE " + filter.getQuery(), Location.class).list();
+        try (Session session = HibernateUtil.getSessionFactory().openSession();
+                QueryCancellation.Registration registration = QueryCancellation.register(session)) {
+            FilterQuery where = FilterQuery.of(filter);
+            return bind(session.createQuery("SELECT l FROM Location l" + where.getWhere() + TIME_ORDER, Location.class), where).list();
         }
     }
+    
+    /**
+     * At most size locations matching the filter in time order, starting after the key,
+     * or at the beginning when it is null. The key of the last location of a page,
+     * {@link LocationKey#of(Location)}, gives the next page.
+     */
+    @SuppressWarnings("try")
+    public List<Location> getLocationPage(Filter filter, LocationKey after, int size) {
+        try (Session session = HibernateUtil.getSessionFactory().openSession();
+                QueryCancellation.Registration registration = QueryCancellation.register(session)) {
+            FilterQuery where = FilterQuery.of(filter);
+            appendAfter(where, after);
+            Query<Location> query = bind(session.createQuery("SELECT l FROM Location l" + where.getWhere() + TIME_ORDER, Location.class), where);
+            query.setMaxResults(size);
+            query.setReadOnly(true);
+            return query.list();
+        }
+    }
+    
+    /**
+     * A range on the (vehicle_id, timestamp, location_id) index, so a page costs the same
+     * however deep it is. Rows without vehicle or timestamp have no place in it, a row
+     * comparison with their key is null and would end the paging there, so no page holds
+     * them.
+     */
+    private static void appendAfter(FilterQuery where, LocationKey after) {
+        if (!where.getCondition().isEmpty())
+            where.append(" AND ");
+        where.append("l.vehicleId IS NOT NULL AND l.timestamp IS NOT NULL");
+        if (after == null)
+            return;
+        where.append(" AND (l.vehicleId, l.timestamp, l.locationId) > (").parameter(after.getVehicleId())
+            .append(", ").parameter(after.getTimestamp())
+            .append(", ").parameter(after.getLocationId()).append(")");
+    }
+    
+    static <T> Query<T> bind(Query<T> query, FilterQuery where) {
+        List<Object> parameters = where.getParameters();
+        for (int i = 0; i < parameters.size(); ++i)
+            query.setParameter(FilterQuery.parameterName(i), parameters.get(i));
+        return query;
+    }
 }
@@ -0,0 +1,98 @@
+package repository;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import filter.Filter;
+import filter.FilterScope;
+import model.Location;
+import model.Vehicle;
+import model.dto.CoordinateArray;
+import model.dto.LocationKey;
+import model.dto.TileCount;
+import model.dto.TrajectoryBuffer;
+
+/**
+ * Where the locations are read from: the database through {@link LocationRepository},
+ * or the files of an {@link EmbeddedLocationStore}. Results come in time order, by
+ * vehicle then timestamp, and a null filter matches every location.
+ */
+public interface LocationStore {
+	public abstract List<String> getPlates();
+	//summary of the plate's locations, null for an unknown plate
+	public abstract Vehicle getVehicle(String plate);
+	/**
+	 * Points by map tile of the zoom, by x then y, for one plate or all of them when it
+	 * is null. Read from counts kept as locations are added, not from the locations.
+	 */
+	public abstract List<TileCount> getTileCounts(String plate, int zoom);
+	public abstract CoordinateArray getCoordinates(Filter filter);
+	//a buffer a vehicle matching the filter, read through a cursor so no location is built
+	public default List<TrajectoryBuffer> getTrajectories(Filter filter) {
+		List<TrajectoryBuffer> trajectories = new ArrayList<TrajectoryBuffer>();
+		try (LocationCursor cursor = openCursor(filter)) {
+			TrajectoryBuffer trajectory = null;
+			while (cursor.next()) {
+				if (trajectory == null || !Objects.equals(cursor.getPlate(), trajectory.getPlate())) {
+					if (trajectory != null)
+						trajectory.trim();
+					//unfiltered the vehicle's count is the size, else it is only a bound
+					Vehicle vehicle = filter == null ? getVehicle(cursor.getPlate()) : null;
+					trajectory = new TrajectoryBuffer(cursor.getPlate(), vehicle == null ? 1024 : (int) Math.min(vehicle.getPointCount(), Integer.MAX_VALUE - 8));
+					trajectories.add(trajectory);
+				}
+				trajectory.add(cursor.getLatitude(), cursor.getLongitude(), cursor.getEpochSecond());
+			}
+			if (trajectory != null)
+				trajectory.trim();
+		}
+		return trajectories;
+	}
+	/**
+	 * The trajectory of every vehicle matching the filter decimated to at most budget
+	 * points, see {@link LargestTriangleBuckets}, read through a cursor so only the kept
+	 * points are held. The buckets split the time the vehicle was seen in, within the
+	 * filter's dates.
+	 * @param metersPerPixel ground size of a pixel of the map, 0 to ignore it
+	 */
+	public default List<TrajectoryBuffer> getTrajectories(Filter filter, int budget, double metersPerPixel) {
+		List<TrajectoryBuffer> trajectories = new ArrayList<TrajectoryBuffer>();
+		LargestTriangleBuckets decimation = new LargestTriangleBuckets(budget, metersPerPixel);
+		FilterScope scope = FilterScope.of(filter);
+		try (LocationCursor cursor = openCursor(filter)) {
+			TrajectoryBuffer trajectory = null;
+			while (cursor.next()) {
+				if (trajectory == null || !Objects.equals(cursor.getPlate(), trajectory.getPlate())) {
+					if (trajectory != null)
+						decimation.finish();
+					String plate = cursor.getPlate();
+					Vehicle vehicle = getVehicle(plate);
+					long first = cursor.getEpochSecond(), last = first;
+					if (vehicle != null && vehicle.getLastSeen() != null)
+						last = vehicle.getLastSeen().toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+					if (scope.getTo() != null)
+						last = Math.min(last, scope.getTo().toLocalDateTime().toEpochSecond(ZoneOffset.UTC));
+					trajectory = new TrajectoryBuffer(plate, Math.min(budget, 1024));
+					trajectories.add(trajectory);
+					decimation.start(trajectory, first, Math.max(first, last));
+				}
+				decimation.add(cursor.getLatitude(), cursor.getLongitude(), cursor.getEpochSecond());
+			}
+			if (trajectory != null)
+				decimation.finish();
+		}
+		return trajectories;
+	}
+	//the stream must be closed
+	public abstract Stream<Location> streamLocations(Filter filter);
+	/**
+	 * At most size locations matching the filter, starting after the key, or at the
+	 * beginning when it is null. Locations without vehicle or timestamp have no key and
+	 * are left out of the pages.
+	 */
+	public abstract List<Location> getLocationPage(Filter filter, LocationKey after, int size);
+	public abstract LocationCursor openCursor(Filter filter);
+}
@@ -0,0 +1,42 @@
+package repository;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The store the application reads from: the database, unless the
+ * {@code tracker.store} system property names the directory of an embedded store.
+ */
+public class LocationStores {
+	public static final String STORE_PROPERTY = "tracker.store";
+
+	private static LocationStore store;
+
+	private LocationStores() {
+	}
+
+	/**
+	 * @throws IllegalStateException if the embedded store cannot be opened
+	 */
+	public static synchronized LocationStore getDefault() {
+		if (store == null) {
+			String directory = System.getProperty(STORE_PROPERTY);
+			if (directory == null || directory.trim().isEmpty()) {
+				store = new LocationRepository();
+			} else {
+				try {
+					store = new EmbeddedLocationStore(new File(directory.trim()));
+				} catch (IOException e) {
+					throw new IllegalStateException("Could not open the store in " + directory + " given by -D" + STORE_PROPERTY + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		return store;
+	}
+
+	//null when the database is used
+	public static EmbeddedLocationStore getEmbedded() {
+		LocationStore store = getDefault();
+		return store instanceof EmbeddedLocationStore ? (EmbeddedLocationStore) store : null;
+	}
+}
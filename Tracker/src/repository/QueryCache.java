@@ -0,0 +1,155 @@
+package repository;
+
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import filter.Filter;
+import filter.FilterQuery;
+import filter.FilterScope;
+
+/**
+ * Results of location queries by normalized filter, least recently used first out
+ * once they take more than {@link #getMaxBytes()} bytes in all. An entry is dropped
+ * when locations of a plate and time range it may cover are committed, so a result
+ * is never older than the last import that could change it.
+ *
+ * Cached values are shared, callers must not modify them.
+ */
+public class QueryCache {
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+	private static final QueryCache INSTANCE = new QueryCache(DEFAULT_MAX_BYTES);
+
+	private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private long maxBytes;
+	private long bytes;
+	//moves on every invalidation, a result loaded meanwhile may be stale and is not kept
+	private long generation;
+	private long hits;
+	private long misses;
+
+	QueryCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public static QueryCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * The cached result of the query, else the loader's, kept when it fits.
+	 * @param kind what the query returns, results of different kinds never mix
+	 * @param variant anything else the result depends on, may be null
+	 * @param weight bytes held by a result, the objects it is made of counted in
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String kind, Filter filter, Object variant, Supplier<T> loader, ToLongFunction<T> weight) {
+		Key key = new Key(kind, FilterQuery.of(filter), variant);
+		long loadedAt;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				++hits;
+				return (T) entry.value;
+			}
+			++misses;
+			loadedAt = generation;
+		}
+		//loaded unlocked, other queries go on meanwhile
+		T value = loader.get();
+		long size = weight.applyAsLong(value);
+		synchronized (this) {
+			if (loadedAt == generation && size <= maxBytes) {
+				Entry previous = entries.put(key, new Entry(value, size, FilterScope.of(filter)));
+				if (previous != null)
+					bytes -= previous.bytes;
+				bytes += size;
+				evict();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Drops the results that may include locations of the plate between first and last,
+	 * null for any plate or an open end.
+	 */
+	public synchronized void invalidate(String plate, Timestamp first, Timestamp last) {
+		++generation;
+		for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();) {
+			Entry entry = i.next();
+			if (entry.scope.overlaps(plate, first, last)) {
+				bytes -= entry.bytes;
+				i.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		++generation;
+		entries.clear();
+		bytes = 0;
+	}
+
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	private void evict() {
+		for (Iterator<Entry> i = entries.values().iterator(); bytes > maxBytes && i.hasNext();) {
+			bytes -= i.next().bytes;
+			i.remove();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return entries.size() + " results, " + bytes + "/" + maxBytes + " bytes, " + hits + " hits, " + misses + " misses";
+	}
+
+	private static class Key {
+		private final String kind;
+		private final FilterQuery query;
+		private final Object variant;
+
+		private Key(String kind, FilterQuery query, Object variant) {
+			this.kind = kind;
+			this.query = query;
+			this.variant = variant;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return kind.equals(other.kind) && query.equals(other.query) && Objects.equals(variant, other.variant);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, query, variant);
+		}
+	}
+
+	private static class Entry {
+		private final Object value;
+		private final long bytes;
+		private final FilterScope scope;
+
+		private Entry(Object value, long bytes, FilterScope scope) {
+			this.value = value;
+			this.bytes = bytes;
+			this.scope = scope;
+		}
+	}
+}
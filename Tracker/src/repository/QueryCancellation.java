@@ -0,0 +1,86 @@
+package repository;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.hibernate.SharedSessionContract;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Cancels the queries of a piece of work running on another thread. While the work runs
+ * through {@link #call(Supplier)}, the repositories register the sessions they query
+ * with it; {@link #cancel()} then cancels their running statement on the server with
+ * JDBC's Statement.cancel, and the reads still going stop at their next check.
+ */
+public class QueryCancellation {
+	private static final ThreadLocal<QueryCancellation> CURRENT = new ThreadLocal<QueryCancellation>();
+
+	private final Set<SharedSessionContractImplementor> sessions = ConcurrentHashMap.newKeySet();
+	private volatile boolean cancelled;
+
+	public <T> T call(Supplier<T> work) {
+		QueryCancellation previous = CURRENT.get();
+		CURRENT.set(this);
+		try {
+			check();
+			return work.get();
+		} finally {
+			if (previous == null)
+				CURRENT.remove();
+			else
+				CURRENT.set(previous);
+		}
+	}
+
+	public void cancel() {
+		cancelled = true;
+		for (SharedSessionContractImplementor session : sessions) {
+			try {
+				session.getJdbcCoordinator().cancelLastQuery();
+			} catch (RuntimeException e) {
+				//the statement ended meanwhile, or the session was closed
+			}
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private void check() {
+		if (cancelled)
+			throw new CancellationException("query cancelled");
+	}
+
+	/**
+	 * Lets the work running on this thread, if any, cancel the session's statements
+	 * until the returned registration is closed.
+	 */
+	static Registration register(SharedSessionContract session) {
+		QueryCancellation current = CURRENT.get();
+		if (current == null)
+			return () -> {};
+		current.check();
+		SharedSessionContractImplementor implementor = (SharedSessionContractImplementor) session;
+		current.sessions.add(implementor);
+		return () -> current.sessions.remove(implementor);
+	}
+
+	//throws CancellationException when the work running on this thread was cancelled
+	static void checkCurrent() {
+		QueryCancellation current = CURRENT.get();
+		if (current != null)
+			current.check();
+	}
+
+	/**
+	 * Held by a try-with-resources around the query and never referenced in it, the
+	 * methods doing so suppress the "try" lint.
+	 */
+	interface Registration extends AutoCloseable {
+		@Override
+		public void close();
+	}
+}
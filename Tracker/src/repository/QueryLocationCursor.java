@@ -0,0 +1,117 @@
+package repository;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.util.Objects;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
+
+import filter.Filter;
+import filter.FilterQuery;
+import util.HibernateUtil;
+
+/**
+ * {@link LocationCursor} over the database. Rows are fetched {@link #FETCH_SIZE} at a
+ * time through a stateless session as plain columns, so nothing accumulates however
+ * many rows the query returns.
+ *
+ * The driver only streams inside a transaction, which is rolled back on close since
+ * nothing is written.
+ */
+class QueryLocationCursor implements LocationCursor {
+	static final int FETCH_SIZE = 1000;
+
+	private final StatelessSession session;
+	private final Transaction transaction;
+	private final ScrollableResults results;
+	private final QueryCancellation.Registration registration;
+	private Object[] row;
+	private long rows;
+	//plate of the last vehicle seen, rows come grouped by vehicle
+	private Integer vehicleId;
+	private String plate;
+
+	QueryLocationCursor(Filter filter) {
+		session = HibernateUtil.getSessionFactory().openStatelessSession();
+		try {
+			registration = QueryCancellation.register(session);
+		} catch (RuntimeException e) {
+			session.close();
+			throw e;
+		}
+		try {
+			transaction = session.beginTransaction();
+			FilterQuery where = FilterQuery.of(filter);
+			Query<Object[]> query = LocationRepository.bind(session.createQuery("SELECT l.vehicleId, l.latitude, l.longitude, l.altitude, l.date, l.time FROM Location l"
+					+ where.getWhere() + LocationRepository.TIME_ORDER, Object[].class), where);
+			query.setFetchSize(FETCH_SIZE);
+			query.setReadOnly(true);
+			results = query.scroll(ScrollMode.FORWARD_ONLY);
+		} catch (RuntimeException e) {
+			registration.close();
+			session.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean next() {
+		if (++rows % FETCH_SIZE == 0)
+			QueryCancellation.checkCurrent();
+		if (!results.next()) {
+			row = null;
+			return false;
+		}
+		row = results.get();
+		return true;
+	}
+
+	//from the catalog, the locations only hold the vehicle key, null without a vehicle
+	@Override
+	public String getPlate() {
+		if (!Objects.equals(row[0], vehicleId)) {
+			vehicleId = (Integer) row[0];
+			plate = VehicleCatalog.getInstance().getPlate(vehicleId);
+		}
+		return plate;
+	}
+
+	@Override
+	public double getLatitude() {
+		return (Double) row[1];
+	}
+
+	@Override
+	public double getLongitude() {
+		return (Double) row[2];
+	}
+
+	//NaN when missing
+	@Override
+	public double getAltitude() {
+		return row[3] == null ? Double.NaN : (Double) row[3];
+	}
+
+	//UTC epoch seconds of the date and time columns
+	@Override
+	public long getEpochSecond() {
+		long day = ((Date) row[4]).toLocalDate().toEpochDay();
+		return day * 86400 + ((Time) row[5]).toLocalTime().toSecondOfDay();
+	}
+
+	@Override
+	public void close() {
+		try {
+			results.close();
+			if (transaction.isActive())
+				transaction.rollback();
+		} finally {
+			registration.close();
+			session.close();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.dto.TileCount;
+import util.TileGrid;
+
+/**
+ * Points counted by map tile at one zoom. Points are added at {@link TileGrid#MAX_ZOOM},
+ * the counts of the lower zooms are rolled up from there.
+ */
+class TileCounts {
+	private final int zoom;
+	//by TileGrid.tile, which sorts by x then y
+	private final Map<Long, long[]> counts = new HashMap<Long, long[]>();
+
+	TileCounts() {
+		this(TileGrid.MAX_ZOOM);
+	}
+
+	TileCounts(int zoom) {
+		this.zoom = zoom;
+	}
+
+	void add(double lat, double lon) {
+		add(TileGrid.of(lat, lon), 1);
+	}
+
+	void addAll(TileCounts other) {
+		if (other.zoom != zoom)
+			throw new IllegalArgumentException("zoom " + other.zoom + " added to zoom " + zoom);
+		for (Map.Entry<Long, long[]> entry : other.counts.entrySet())
+			add(entry.getKey(), entry.getValue()[0]);
+	}
+
+	private void add(long tile, long points) {
+		long[] count = counts.get(tile);
+		if (count == null)
+			counts.put(tile, new long[] {points});
+		else
+			count[0] += points;
+	}
+
+	int getZoom() {
+		return zoom;
+	}
+
+	//tiles holding points
+	int size() {
+		return counts.size();
+	}
+
+	//every tile and its points, by x then y, 16 bytes a tile
+	void write(ByteBuffer buffer) {
+		List<Long> tiles = new ArrayList<Long>(counts.keySet());
+		tiles.sort(null);
+		for (long tile : tiles)
+			buffer.putLong(tile).putLong(counts.get(tile)[0]);
+	}
+
+	//the tiles put by write, read from the buffer's position
+	static TileCounts read(ByteBuffer buffer, int tiles) {
+		TileCounts read = new TileCounts();
+		for (int i = 0; i < tiles; ++i)
+			read.add(buffer.getLong(), buffer.getLong());
+		return read;
+	}
+
+	boolean isEmpty() {
+		return counts.isEmpty();
+	}
+
+	//the same points counted at a lower zoom
+	TileCounts at(int zoom) {
+		if (zoom < 0 || zoom > this.zoom)
+			throw new IllegalArgumentException("zoom " + zoom + " is not between 0 and " + this.zoom);
+		if (zoom == this.zoom)
+			return this;
+		TileCounts rolled = new TileCounts(zoom);
+		int shift = this.zoom - zoom;
+		for (Map.Entry<Long, long[]> entry : counts.entrySet()) {
+			long tile = entry.getKey();
+			rolled.add(TileGrid.tile(TileGrid.x(tile) >> shift, TileGrid.y(tile) >> shift), entry.getValue()[0]);
+		}
+		return rolled;
+	}
+
+	//by x then y
+	List<TileCount> toList() {
+		List<Long> tiles = new ArrayList<Long>(counts.keySet());
+		tiles.sort(null);
+		List<TileCount> list = new ArrayList<TileCount>(tiles.size());
+		for (long tile : tiles)
+			list.add(new TileCount(zoom, TileGrid.x(tile), TileGrid.y(tile), counts.get(tile)[0]));
+		return list;
+	}
+}
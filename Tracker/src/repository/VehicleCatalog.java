@@ -0,0 +1,125 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import model.Vehicle;
+import util.HibernateUtil;
+
+/**
+ * The vehicle table kept in memory, read once and then updated by the imports that
+ * commit new locations. Plates are listed and resolved to their key without touching
+ * the locations.
+ */
+public class VehicleCatalog {
+	private static final VehicleCatalog INSTANCE = new VehicleCatalog();
+
+	private final Map<String, Vehicle> byPlate = new HashMap<String, Vehicle>();
+	private final Map<Integer, Vehicle> byId = new HashMap<Integer, Vehicle>();
+	private boolean loaded;
+
+	private VehicleCatalog() {
+	}
+
+	public static VehicleCatalog getInstance() {
+		return INSTANCE;
+	}
+
+	public synchronized List<String> getPlates() {
+		load();
+		List<String> plates = new ArrayList<String>(byPlate.keySet());
+		Collections.sort(plates);
+		return plates;
+	}
+
+	/**
+	 * @return a copy of the vehicle and its summary, null for an unknown plate
+	 */
+	public synchronized Vehicle get(String plate) {
+		load();
+		return copy(byPlate.get(plate));
+	}
+
+	public synchronized String getPlate(Integer vehicleId) {
+		load();
+		Vehicle vehicle = byId.get(vehicleId);
+		return vehicle == null ? null : vehicle.getPlate();
+	}
+
+	/**
+	 * The key of the plate, adding the vehicle when it is new. Concurrent imports of
+	 * the same plate get the same key.
+	 */
+	public synchronized Integer idOf(String plate) {
+		load();
+		Vehicle vehicle = byPlate.get(plate);
+		if (vehicle != null)
+			return vehicle.getVehicleId();
+		Transaction transaction = null;
+		try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+			transaction = session.beginTransaction();
+			//another process may have added it since the catalog was read
+			session.createNativeQuery("INSERT INTO vehicle (vehicle_id, plate, point_count) "
+					+ "VALUES (nextval('vehicle_seq'), :plate, 0) ON CONFLICT (plate) DO NOTHING")
+				.setParameter("plate", plate)
+				.executeUpdate();
+			vehicle = session.createQuery("FROM Vehicle v WHERE v.plate = :plate", Vehicle.class)
+				.setParameter("plate", plate)
+				.getSingleResult();
+			transaction.commit();
+		} catch (RuntimeException e) {
+			if (transaction != null && transaction.isActive())
+				transaction.rollback();
+			throw e;
+		}
+		put(vehicle);
+		return vehicle.getVehicleId();
+	}
+
+	//summaries of committed locations, the cached results they may change are dropped
+	synchronized void added(Collection<Vehicle> summaries) {
+		for (Vehicle summary : summaries) {
+			Vehicle vehicle = loaded ? byId.get(summary.getVehicleId()) : null;
+			if (vehicle != null)
+				vehicle.addSummary(summary);
+			QueryCache.getInstance().invalidate(vehicle == null ? null : vehicle.getPlate(), summary.getFirstSeen(), summary.getLastSeen());
+		}
+	}
+
+	//reads the table again on next use, for changes made by other processes
+	public synchronized void reload() {
+		loaded = false;
+	}
+
+	private void load() {
+		if (loaded)
+			return;
+		byPlate.clear();
+		byId.clear();
+		try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+			for (Vehicle vehicle : session.createQuery("FROM Vehicle", Vehicle.class).list())
+				put(vehicle);
+		}
+		loaded = true;
+	}
+
+	private void put(Vehicle vehicle) {
+		byPlate.put(vehicle.getPlate(), vehicle);
+		byId.put(vehicle.getVehicleId(), vehicle);
+	}
+
+	private static Vehicle copy(Vehicle vehicle) {
+		if (vehicle == null)
+			return null;
+		Vehicle copy = new Vehicle(vehicle.getVehicleId(), vehicle.getPlate());
+		copy.addSummary(vehicle);
+		return copy;
+	}
+}
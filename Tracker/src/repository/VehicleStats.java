@@ -0,0 +1,169 @@
+package repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.Session;
+
+import model.Location;
+import model.Vehicle;
+import model.dto.TileCount;
+import util.TileGrid;
+
+/**
+ * Summaries of the locations written in a transaction, by vehicle. They are added to
+ * the vehicle rows in the same transaction and to {@link VehicleCatalog} once it
+ * commits, so the catalog never has to scan the locations. So are the point counts by
+ * map tile, kept in tile_count for every zoom of {@link TileGrid}, and by month of the
+ * dated points in month_tile_count at the deepest zoom, which a month's retention
+ * subtracts instead of counting its rows again.
+ */
+public class VehicleStats {
+	private static final String ADD_TILES = "INSERT INTO tile_count (vehicle_id, zoom, tile_x, tile_y, points) VALUES (?, ?, ?, ?, ?) "
+			+ "ON CONFLICT (vehicle_id, zoom, tile_x, tile_y) DO UPDATE SET points = tile_count.points + EXCLUDED.points";
+	private static final String ADD_MONTH_TILES = "INSERT INTO month_tile_count (month, vehicle_id, tile_x, tile_y, points) VALUES (?, ?, ?, ?, ?) "
+			+ "ON CONFLICT (month, vehicle_id, tile_x, tile_y) DO UPDATE SET points = month_tile_count.points + EXCLUDED.points";
+
+	private final Map<Integer, Vehicle> added = new HashMap<Integer, Vehicle>();
+	//sorted, concurrent imports of a vehicle lock its tile rows in the same order
+	private final Map<Integer, Tiles> tiles = new TreeMap<Integer, Tiles>();
+
+	public void add(Location location) {
+		Timestamp timestamp = location.getTimestamp();
+		summary(location.getVehicleId()).addPoint(location.getLatitude(), location.getLongitude(), timestamp);
+		addTile(location.getVehicleId(), location.getLatitude(), location.getLongitude(),
+				timestamp == null ? null : YearMonth.from(timestamp.toLocalDateTime()));
+	}
+
+	/**
+	 * Only counts the point by tile, add(Vehicle) takes the rest of its summary.
+	 * @param month of the point's timestamp, null when it has none
+	 */
+	public void addTile(Integer vehicleId, double lat, double lon, YearMonth month) {
+		Tiles counts = tiles.get(vehicleId);
+		if (counts == null) {
+			counts = new Tiles();
+			tiles.put(vehicleId, counts);
+		}
+		counts.of(month).add(lat, lon);
+	}
+
+	public void add(Vehicle summary) {
+		summary(summary.getVehicleId()).addSummary(summary);
+	}
+
+	private Vehicle summary(Integer vehicleId) {
+		Vehicle summary = added.get(vehicleId);
+		if (summary == null) {
+			summary = new Vehicle(vehicleId, null);
+			added.put(vehicleId, summary);
+		}
+		return summary;
+	}
+
+	//LEAST and GREATEST skip nulls, so the first locations of a vehicle set its bounds
+	void apply(Session session) {
+		for (Vehicle summary : added.values()) {
+			if (summary.getPointCount() == 0)
+				continue;
+			session.createNativeQuery("UPDATE vehicle SET point_count = point_count + :count, "
+					+ "first_seen = LEAST(first_seen, :first), last_seen = GREATEST(last_seen, :last), "
+					+ "south = LEAST(south, :south), west = LEAST(west, :west), "
+					+ "north = GREATEST(north, :north), east = GREATEST(east, :east) WHERE vehicle_id = :id")
+				.setParameter("count", summary.getPointCount())
+				.setParameter("first", summary.getFirstSeen())
+				.setParameter("last", summary.getLastSeen())
+				.setParameter("south", summary.getSouth())
+				.setParameter("west", summary.getWest())
+				.setParameter("north", summary.getNorth())
+				.setParameter("east", summary.getEast())
+				.setParameter("id", summary.getVehicleId())
+				.executeUpdate();
+		}
+		if (tiles.isEmpty())
+			return;
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(ADD_TILES)) {
+				for (Map.Entry<Integer, Tiles> entry : tiles.entrySet()) {
+					TileCounts all = entry.getValue().all();
+					for (int zoom = 0; zoom <= TileGrid.MAX_ZOOM; ++zoom) {
+						for (TileCount tile : all.at(zoom).toList()) {
+							statement.setInt(1, entry.getKey());
+							statement.setInt(2, zoom);
+							statement.setInt(3, tile.getX());
+							statement.setInt(4, tile.getY());
+							statement.setLong(5, tile.getPoints());
+							statement.addBatch();
+						}
+					}
+				}
+				statement.executeBatch();
+			}
+			try (PreparedStatement statement = connection.prepareStatement(ADD_MONTH_TILES)) {
+				for (Map.Entry<Integer, Tiles> entry : tiles.entrySet()) {
+					for (Map.Entry<YearMonth, TileCounts> month : entry.getValue().months.entrySet()) {
+						for (TileCount tile : month.getValue().toList()) {
+							statement.setDate(1, Date.valueOf(month.getKey().atDay(1)));
+							statement.setInt(2, entry.getKey());
+							statement.setInt(3, tile.getX());
+							statement.setInt(4, tile.getY());
+							statement.setLong(5, tile.getPoints());
+							statement.addBatch();
+						}
+					}
+				}
+				statement.executeBatch();
+			}
+		});
+	}
+
+	Collection<Vehicle> getAdded() {
+		return added.values();
+	}
+
+	void clear() {
+		added.clear();
+		tiles.clear();
+	}
+
+	//the tiles of one vehicle by month, the undated points apart
+	private static class Tiles {
+		final Map<YearMonth, TileCounts> months = new TreeMap<YearMonth, TileCounts>();
+		final TileCounts undated = new TileCounts();
+		//points come in time order, mostly of the same month as the last one
+		YearMonth month;
+		TileCounts counts;
+
+		TileCounts of(YearMonth month) {
+			if (month == null)
+				return undated;
+			if (!month.equals(this.month)) {
+				counts = months.get(month);
+				if (counts == null) {
+					counts = new TileCounts();
+					months.put(month, counts);
+				}
+				this.month = month;
+			}
+			return counts;
+		}
+
+		TileCounts all() {
+			if (months.isEmpty())
+				return undated;
+			if (months.size() == 1 && undated.isEmpty())
+				return counts;
+			TileCounts all = new TileCounts();
+			all.addAll(undated);
+			for (TileCounts counts : months.values())
+				all.addAll(counts);
+			return all;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+
+import filter.Filter;
+import model.dto.Coordinate;
+import model.dto.TrajectoryBuffer;
+
+/**
+ * The queries of {@link TrajectoryService} run on a background executor. Cancelling a
+ * returned future cancels the statement it is running on the database.
+ */
+public interface AsyncTrajectoryService {
+	public abstract CompletableFuture<List<Coordinate>> getTrajectory(Filter filter);
+	public abstract CompletableFuture<List<Coordinate>> getTrajectory(Filter filter, Integer budget, Double metersPerPixel);
+	public abstract CompletableFuture<List<TrajectoryBuffer>> getTrajectories(Filter filter);
+	public abstract CompletableFuture<List<TrajectoryBuffer>> getTrajectories(Filter filter, Integer budget, Double metersPerPixel);
+	public abstract CompletableFuture<List<String>> getPlates();
+	public abstract CompletableFuture<SortedSet<Coordinate>> getSortedSetLocations(Filter filter, Integer precision);
+	/**
+	 * Percentage of the trajectory's points, rounded to the precision, every plate went
+	 * through, the plates being read concurrently.
+	 */
+	public abstract CompletableFuture<Map<String, String>> getCoincidence(List<TrajectoryBuffer> trajectories, Integer precision);
+}
@@ -0,0 +1,11 @@
+package service;
+
+import java.io.File;
+
+import ingest.ThinningOptions;
+import model.dto.ImportReport;
+
+public interface DatasetImportService {
+	public abstract ImportReport importDirectory(File root, ImportJob job);
+	public abstract void setThinning(ThinningOptions thinning);
+}
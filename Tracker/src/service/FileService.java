@@ -2,8 +2,39 @@ package service;
 
 import java.io.File;
 
+import filter.Filter;
+import ingest.ThinningOptions;
+import model.dto.ImportReport;
+
 public abstract class FileService {
 	
+	protected ImportReport lastReport;
+	protected long lastExportRows;
+	protected ThinningOptions thinning = ThinningOptions.NONE;
+	
 	public abstract Boolean importData(File file, String plate);
-	public abstract File exportData();
+	public abstract ImportReport importData(File file, String plate, ImportJob job);
+	/**
+	 * Writes the locations matching the filter, all of them when it is null, to the file
+	 * in the format of its extension.
+	 * @return the file, null if the export failed
+	 */
+	public abstract File exportData(Filter filter, File file);
+	
+	public ImportReport getLastReport() {
+		return lastReport;
+	}
+	
+	//locations written by the last export that did not fail
+	public long getLastExportRows() {
+		return lastExportRows;
+	}
+	
+	public ThinningOptions getThinning() {
+		return thinning;
+	}
+	
+	public void setThinning(ThinningOptions thinning) {
+		this.thinning = thinning;
+	}
 }
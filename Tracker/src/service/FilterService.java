@@ -1,7 +1,10 @@
 package service;
 
 import filter.Filter;
+import model.dto.BoundingBox;
 
 public interface FilterService {
 	public abstract Filter setFilters(String dateFrom, String dateTo, String plate);
+	public abstract Filter setFilters(String dateFrom, String dateTo, String plate, String timeFrom, String timeTo);
+	public abstract Filter setFilters(String dateFrom, String dateTo, String plate, String timeFrom, String timeTo, BoundingBox area);
 }
@@ -0,0 +1,147 @@
+package service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.dto.ImportProgress;
+import model.dto.ImportReport;
+import model.dto.ThinningStatistics;
+
+/**
+ * Handle of a running or queued import. Importers report what they parsed and
+ * committed through it and stop at the next batch once it is cancelled.
+ */
+public class ImportJob {
+	//parse progress is published at most this often, commits always are
+	private static final long PUBLISH_INTERVAL = 200_000_000L;
+
+	private final String name;
+	private final ImportListener listener;
+	private final Set<String> plates = ConcurrentHashMap.newKeySet();
+	private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicInteger filesTotal = new AtomicInteger();
+	private final AtomicInteger filesDone = new AtomicInteger();
+	private final AtomicInteger filesFailed = new AtomicInteger();
+	private final AtomicInteger filesSkipped = new AtomicInteger();
+	private final AtomicLong rowsParsed = new AtomicLong();
+	private final AtomicLong rowsCommitted = new AtomicLong();
+	private final long start = System.nanoTime();
+	private volatile long lastPublished;
+	private volatile boolean cancelled;
+	//of every file thinned so far, null while none is
+	private ThinningStatistics thinning;
+
+	public ImportJob(String name, ImportListener listener) {
+		this.name = name;
+		this.listener = listener;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void addFiles(int files) {
+		filesTotal.addAndGet(files);
+	}
+
+	public void parsed(long rows) {
+		rowsParsed.addAndGet(rows);
+		publish(false);
+	}
+
+	public void committed(long rows) {
+		rowsCommitted.addAndGet(rows);
+		publish(true);
+	}
+
+	public void fileDone(String plate) {
+		fileDone(Collections.singleton(plate));
+	}
+	
+	//a file holding several plates
+	public void fileDone(Collection<String> plates) {
+		this.plates.addAll(plates);
+		filesDone.incrementAndGet();
+		publish(true);
+	}
+
+	//already imported and unchanged
+	public void fileSkipped(File file) {
+		filesSkipped.incrementAndGet();
+		filesDone.incrementAndGet();
+		publish(true);
+	}
+
+	public void fileFailed(File file, Exception cause) {
+		filesFailed.incrementAndGet();
+		filesDone.incrementAndGet();
+		failures.add(file.getName() + ": " + cause.getMessage());
+		if (listener != null)
+			listener.fileFailed(file, cause);
+		publish(true);
+	}
+
+	public void fileThinned(File file, ThinningStatistics statistics) {
+		synchronized (this) {
+			thinning = thinning == null ? statistics : thinning.plus(statistics);
+		}
+		if (listener != null)
+			listener.fileThinned(file, statistics);
+	}
+
+	public void finish(ImportReport report) {
+		if (listener != null)
+			listener.finished(this, report);
+	}
+
+	public ImportReport report() {
+		return new ImportReport(name, rowsCommitted.get(), System.nanoTime() - start, getFailures(), cancelled, getThinning());
+	}
+
+	public synchronized ThinningStatistics getThinning() {
+		return thinning;
+	}
+
+	public ImportProgress getProgress() {
+		return new ImportProgress(filesTotal.get(), filesDone.get(), filesFailed.get(), filesSkipped.get(),
+				rowsParsed.get(), rowsCommitted.get(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Plates that received rows from this job.
+	 */
+	public Set<String> getPlates() {
+		return Collections.unmodifiableSet(plates);
+	}
+
+	public List<String> getFailures() {
+		synchronized (failures) {
+			return new ArrayList<String>(failures);
+		}
+	}
+
+	private void publish(boolean force) {
+		if (listener == null)
+			return;
+		long now = System.nanoTime();
+		if (!force && now - lastPublished < PUBLISH_INTERVAL)
+			return;
+		lastPublished = now;
+		listener.progress(getProgress());
+	}
+}
@@ -0,0 +1,10 @@
+package service;
+
+import java.util.function.Function;
+
+import model.dto.ImportReport;
+
+public interface ImportJobService {
+	public abstract ImportJob submit(String name, ImportListener listener, Function<ImportJob, ImportReport> work);
+	public abstract void cancelAll();
+}
@@ -0,0 +1,17 @@
+package service;
+
+import java.io.File;
+
+import model.dto.ImportProgress;
+import model.dto.ImportReport;
+import model.dto.ThinningStatistics;
+
+/**
+ * Receives import progress. Called from the import worker threads.
+ */
+public interface ImportListener {
+	public abstract void progress(ImportProgress progress);
+	public abstract void fileFailed(File file, Exception cause);
+	public abstract void fileThinned(File file, ThinningStatistics statistics);
+	public abstract void finished(ImportJob job, ImportReport report);
+}
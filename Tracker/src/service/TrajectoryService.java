@@ -5,13 +5,25 @@ import java.util.SortedSet;
 
 import filter.Filter;
 import model.Location;
+import model.Vehicle;
 import model.dto.Coordinate;
+import model.dto.LocationKey;
+import model.dto.TileCount;
+import model.dto.TrajectoryBuffer;
 
 public interface TrajectoryService {
 	public abstract List<Coordinate> getTrajectory(Filter filter);
+	public abstract List<Coordinate> getTrajectory(Filter filter, Integer budget, Double metersPerPixel);
 	public abstract List<Coordinate> getAllTrajectories();
+	public abstract List<TrajectoryBuffer> getTrajectories(Filter filter);
+	public abstract List<TrajectoryBuffer> getTrajectories(Filter filter, Integer budget, Double metersPerPixel);
 	public abstract List<String> getPlates();
+	public abstract Vehicle getVehicle(String plate);
+	public abstract List<TileCount> getTileCounts(String plate, Integer zoom);
 	public abstract SortedSet<Coordinate> getSortedSetLocations(List<Coordinate> trajectory);
+	public abstract SortedSet<Coordinate> getSortedSetLocations(Filter filter, Integer precision);
+	public abstract SortedSet<Coordinate> getSortedSetLocations(List<TrajectoryBuffer> trajectories, Integer precision);
 	public abstract List<Coordinate> toCoordinateList(List<Location> locations);
 	public abstract List<Coordinate> setPrecision(List<Coordinate> trajectory, Integer precision);
+	public abstract List<Location> getLocationPage(Filter filter, LocationKey after, Integer size);
 }
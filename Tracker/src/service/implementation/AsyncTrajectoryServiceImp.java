@@ -0,0 +1,226 @@
+package service.implementation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import filter.Filter;
+import filter.PlateFilter;
+import model.dto.Coordinate;
+import model.dto.TrajectoryBuffer;
+import repository.QueryCancellation;
+import service.AsyncTrajectoryService;
+import service.TrajectoryService;
+import util.HibernateUtil;
+
+/**
+ * Runs the queries of a {@link TrajectoryService} on a shared executor: a virtual thread
+ * per query on Java 21 and later, else a pool of {@link #THREADS} daemon threads. Either
+ * way the connection pool bounds how many run on the database at once.
+ */
+public class AsyncTrajectoryServiceImp implements AsyncTrajectoryService {
+	public static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+	private static final ExecutorService EXECUTOR = createExecutor();
+
+	private TrajectoryService trajectoryService;
+
+	public AsyncTrajectoryServiceImp() {
+		this(new TrajectoryServiceImp());
+	}
+
+	public AsyncTrajectoryServiceImp(TrajectoryService trajectoryService) {
+		this.trajectoryService = trajectoryService;
+	}
+
+	@Override
+	public CompletableFuture<List<Coordinate>> getTrajectory(Filter filter) {
+		if (filter == null)
+			return submit(trajectoryService::getAllTrajectories);
+		return submit(() -> trajectoryService.getTrajectory(filter));
+	}
+
+	@Override
+	public CompletableFuture<List<Coordinate>> getTrajectory(Filter filter, Integer budget, Double metersPerPixel) {
+		return submit(() -> trajectoryService.getTrajectory(filter, budget, metersPerPixel));
+	}
+
+	@Override
+	public CompletableFuture<List<TrajectoryBuffer>> getTrajectories(Filter filter) {
+		return submit(() -> trajectoryService.getTrajectories(filter));
+	}
+
+	@Override
+	public CompletableFuture<List<TrajectoryBuffer>> getTrajectories(Filter filter, Integer budget, Double metersPerPixel) {
+		return submit(() -> trajectoryService.getTrajectories(filter, budget, metersPerPixel));
+	}
+
+	@Override
+	public CompletableFuture<List<String>> getPlates() {
+		return submit(trajectoryService::getPlates);
+	}
+
+	@Override
+	public CompletableFuture<SortedSet<Coordinate>> getSortedSetLocations(Filter filter, Integer precision) {
+		return submit(() -> trajectoryService.getSortedSetLocations(filter, precision));
+	}
+
+	/**
+	 * The set searched for is built on the executor too, next to the plates query. Then
+	 * one query a plate, at most as many at once as the pool has connections so the
+	 * plates waiting do not time out on it, and only their sets are held. Cancelling
+	 * the result, or a query failing, cancels those still running.
+	 */
+	@Override
+	public CompletableFuture<Map<String, String>> getCoincidence(List<TrajectoryBuffer> trajectories, Integer precision) {
+		CompletableFuture<Map<String, String>> result = new CompletableFuture<Map<String, String>>();
+		CompletableFuture<SortedSet<Coordinate>> searched = submit(() -> trajectoryService.getSortedSetLocations(trajectories, precision));
+		CompletableFuture<List<String>> plates = getPlates();
+		result.whenComplete((coincidence, failure) -> {
+			if (failure != null) {
+				searched.cancel(true);
+				plates.cancel(true);
+			}
+		});
+		//either failing fails the result at once, not after the other is done
+		searched.whenComplete((set, failure) -> {
+			if (failure != null)
+				result.completeExceptionally(failure);
+		});
+		plates.whenComplete((list, failure) -> {
+			if (failure != null)
+				result.completeExceptionally(failure);
+		});
+		searched.thenAcceptBoth(plates, (set, list) -> new Coincidence(list, set, precision, result).start());
+		return result;
+	}
+
+	//the queries of a database store share its pool, those of an embedded one only the executor
+	private static int concurrency() {
+		int pool = HibernateUtil.getMaxPoolSize();
+		return pool > 0 ? pool : THREADS;
+	}
+
+	private static <T> CompletableFuture<T> submit(Supplier<T> query) {
+		QueryCancellation cancellation = new QueryCancellation();
+		QueryFuture<T> future = new QueryFuture<T>();
+		future.onCancel(cancellation::cancel);
+		EXECUTOR.execute(() -> {
+			if (future.isDone())
+				return;
+			try {
+				future.complete(cancellation.call(query));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	private static ExecutorService createExecutor() {
+		try {
+			//Java 21 and later, looked up so older runtimes still load the class
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newFixedThreadPool(THREADS, runnable -> {
+				Thread thread = new Thread(runnable, "query-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	//the plates of a getCoincidence, the next one is queried as one ends
+	private class Coincidence {
+		private final List<String> plates;
+		private final SortedSet<Coordinate> searched;
+		private final Integer precision;
+		private final CompletableFuture<Map<String, String>> result;
+		private final double[] shares;
+		private final AtomicInteger next = new AtomicInteger();
+		private final AtomicInteger done = new AtomicInteger();
+		private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+
+		Coincidence(List<String> plates, SortedSet<Coordinate> searched, Integer precision, CompletableFuture<Map<String, String>> result) {
+			this.plates = plates;
+			this.searched = searched;
+			this.precision = precision;
+			this.result = result;
+			this.shares = new double[plates.size()];
+		}
+
+		void start() {
+			if (plates.isEmpty()) {
+				result.complete(new LinkedHashMap<String, String>());
+				return;
+			}
+			//cancelled or failed
+			result.whenComplete((coincidence, failure) -> {
+				if (failure != null)
+					for (CompletableFuture<?> query : running)
+						query.cancel(true);
+			});
+			for (int i = Math.min(plates.size(), concurrency()); i > 0; --i)
+				queryNext();
+		}
+
+		private void queryNext() {
+			int plate = next.getAndIncrement();
+			if (plate >= plates.size() || result.isDone())
+				return;
+			//the query's own future, the ones depending on it do not pass a cancel on
+			CompletableFuture<SortedSet<Coordinate>> locations = getSortedSetLocations(new PlateFilter(plates.get(plate)), precision);
+			running.add(locations);
+			if (result.isCompletedExceptionally())
+				locations.cancel(true);
+			locations.whenComplete((set, failure) -> {
+				running.remove(locations);
+				if (failure != null) {
+					result.completeExceptionally(failure);
+					return;
+				}
+				set.retainAll(searched);
+				shares[plate] = ((double) set.size() / (double) searched.size()) * 100;
+				if (done.incrementAndGet() == plates.size())
+					finish();
+				else
+					queryNext();
+			});
+		}
+
+		private void finish() {
+			Map<String, String> coincidence = new LinkedHashMap<String, String>();
+			for (int i = 0; i < plates.size(); ++i)
+				coincidence.put(plates.get(i), Double.toString(shares[i]));
+			result.complete(coincidence);
+		}
+	}
+
+	//runs its actions when cancelled, at once when it already was
+	private static class QueryFuture<T> extends CompletableFuture<T> {
+		private final List<Runnable> onCancel = new CopyOnWriteArrayList<Runnable>();
+
+		void onCancel(Runnable action) {
+			onCancel.add(action);
+			if (isCancelled())
+				action.run();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			for (Runnable action : onCancel)
+				action.run();
+			return cancelled;
+		}
+	}
+}
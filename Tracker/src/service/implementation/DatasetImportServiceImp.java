@@ -0,0 +1,250 @@
+package service.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import format.PointBatch;
+import format.TrackFormats;
+import format.TrackReader;
+import ingest.ThinningOptions;
+import ingest.ThinningReader;
+import model.ImportedFile;
+import model.dto.ImportReport;
+import repository.LocationBatchWriter;
+import repository.LocationRepository;
+import repository.VehicleCatalog;
+import service.DatasetImportService;
+import service.ImportJob;
+
+/**
+ * Imports a GeoLife style tree ({@code Data/<user>/Trajectory/*.plt}), files of the other
+ * formats of {@link TrackFormats} included. Files are parsed
+ * on a pool of threads and handed to the database writers in chunks of about
+ * {@link LocationBatchWriter#CHUNK_SIZE} points through bounded queues, so parsers wait
+ * when the writers fall behind and no file is held whole, however large.
+ *
+ * Every chunk is committed with the manifest checkpoint after it. The chunks of a file
+ * all go to the same writer, in order, and the import of a file that failed or was
+ * cancelled continues after its last committed chunk.
+ */
+public class DatasetImportServiceImp implements DatasetImportService {
+	private static final int BATCH_SIZE = 1024;
+	private static final Chunk END = new Chunk(null, null, null, null, 0, 0, false);
+
+	private final int parserThreads;
+	private final int writerThreads;
+	private LocationRepository locationRepository;
+	private VehicleCatalog vehicleCatalog;
+	private FileTrackServiceImp trackService;
+
+	public DatasetImportServiceImp() {
+		this(Runtime.getRuntime().availableProcessors(), 2);
+	}
+
+	public DatasetImportServiceImp(int parserThreads, int writerThreads) {
+		this.parserThreads = parserThreads;
+		this.writerThreads = writerThreads;
+		locationRepository = new LocationRepository();
+		vehicleCatalog = VehicleCatalog.getInstance();
+		trackService = new FileTrackServiceImp();
+	}
+
+	@Override
+	public ImportReport importDirectory(File root, ImportJob job) {
+		List<File> files;
+		try {
+			files = findFiles(root);
+		} catch (IOException e) {
+			e.printStackTrace();
+			job.fileFailed(root, e);
+			return job.report();
+		}
+
+		job.addFiles(files.size());
+		//one queue per writer, sized to about two chunks per parser
+		List<BlockingQueue<Chunk>> queues = new ArrayList<BlockingQueue<Chunk>>();
+		for (int i = 0; i < writerThreads; ++i)
+			queues.add(new ArrayBlockingQueue<Chunk>(Math.max(2, 2 * parserThreads / writerThreads)));
+		ExecutorService writers = Executors.newFixedThreadPool(writerThreads);
+		ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+		try {
+			for (BlockingQueue<Chunk> queue : queues)
+				writers.submit(() -> drain(queue, job));
+			for (int i = 0; i < files.size(); ++i) {
+				File file = files.get(i);
+				BlockingQueue<Chunk> queue = queues.get(i % writerThreads);
+				parsers.submit(() -> parse(file, queue, job));
+			}
+
+			parsers.shutdown();
+			parsers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			for (BlockingQueue<Chunk> queue : queues)
+				queue.put(END);
+			writers.shutdown();
+			writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			parsers.shutdownNow();
+			writers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		return job.report();
+	}
+
+	@Override
+	public void setThinning(ThinningOptions thinning) {
+		trackService.setThinning(thinning);
+	}
+
+	//the plate of the folder is the plate of every track of the file
+	private void parse(File file, BlockingQueue<Chunk> queue, ImportJob job) {
+		if (job.isCancelled())
+			return;
+		try {
+			String plate = plateOf(file);
+			ImportedFile entry = trackService.getImportManifest().open(file, plate);
+			if (entry == null) {
+				job.fileSkipped(file);
+				return;
+			}
+			PointBatch batch = new PointBatch(ThinningReader.outputSize(BATCH_SIZE));
+			try (TrackReader reader = TrackFormats.open(file, entry.getCommittedOffset(), entry.getCommittedLine())) {
+				ThinningReader points = new ThinningReader(reader, trackService.getThinning(), BATCH_SIZE);
+				PointBatch chunk = newChunk();
+				//points read from the file, before thinning
+				long parsed = 0;
+				while (!job.isCancelled() && points.read(batch) > 0) {
+					job.parsed(points.getPointsRead() - parsed);
+					parsed = points.getPointsRead();
+					for (int i = 0; i < batch.size(); ++i)
+						chunk.add(batch, i);
+					if (chunk.size() >= LocationBatchWriter.CHUNK_SIZE) {
+						int last = chunk.size() - 1;
+						queue.put(new Chunk(file, plate, entry, chunk, chunk.getOffset(last), chunk.getLine(last), false));
+						chunk = newChunk();
+					}
+				}
+				if (job.isCancelled())
+					return;
+				//sent even when empty, it completes the manifest entry
+				queue.put(new Chunk(file, plate, entry, chunk, reader.getPosition(), reader.getLine(), true));
+				if (points.getThinner() != null)
+					job.fileThinned(file, points.getThinner().getStatistics());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			job.fileFailed(file, e);
+		}
+	}
+
+	//room for a last read batch past the chunk size
+	private static PointBatch newChunk() {
+		return new PointBatch(LocationBatchWriter.CHUNK_SIZE + ThinningReader.outputSize(BATCH_SIZE));
+	}
+
+	private void drain(BlockingQueue<Chunk> queue, ImportJob job) {
+		LocationBatchWriter writer = null;
+		//files a chunk of which failed, their later chunks are dropped
+		Set<File> failed = new HashSet<File>();
+		try {
+			Chunk chunk;
+			while ((chunk = queue.take()) != END) {
+				//keep taking so blocked parsers can finish, but write nothing more
+				if (job.isCancelled() || failed.contains(chunk.file))
+					continue;
+				try {
+					if (writer == null) {
+						writer = locationRepository.openBatchWriter();
+						//one transaction per chunk, together with its manifest checkpoint
+						writer.setChunkSize(Integer.MAX_VALUE);
+					}
+					//the writer has committed the previous chunk, nothing is pending
+					FileTrackServiceImp.ensurePartitions(chunk.points, writer);
+					Integer vehicleId = vehicleCatalog.idOf(chunk.plate);
+					for (int i = 0; i < chunk.points.size(); ++i)
+						writer.write(FileTrackServiceImp.toLocation(chunk.points, i, vehicleId));
+					chunk.entry.setCommitted(chunk.offset, chunk.line);
+					chunk.entry.setComplete(chunk.last);
+					writer.setCheckpoint(chunk.entry);
+					writer.finish();
+					job.committed(chunk.points.size());
+					if (chunk.last)
+						job.fileDone(chunk.plate);
+				} catch (RuntimeException e) {
+					//start over with a clean session, the failed chunk is rolled back
+					close(writer);
+					writer = null;
+					failed.add(chunk.file);
+					job.fileFailed(chunk.file, e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			close(writer);
+		}
+	}
+
+	private void close(LocationBatchWriter writer) {
+		if (writer == null)
+			return;
+		try {
+			writer.close();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private List<File> findFiles(File root) throws IOException {
+		try (Stream<Path> paths = Files.walk(root.toPath())) {
+			return paths.filter(Files::isRegularFile)
+					.filter(path -> TrackFormats.forName(path.getFileName().toString()) != null)
+					.map(Path::toFile)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	//Data/<user>/Trajectory/<file>.plt belongs to <user>
+	static String plateOf(File file) {
+		File directory = file.getParentFile();
+		if (directory != null && directory.getName().equalsIgnoreCase("Trajectory") && directory.getParentFile() != null)
+			directory = directory.getParentFile();
+		return directory == null ? file.getName() : directory.getName();
+	}
+
+	//points of a file and the position in it after them
+	private static class Chunk {
+		private final File file;
+		private final String plate;
+		private final ImportedFile entry;
+		private final PointBatch points;
+		private final long offset;
+		private final long line;
+		//the end of the file
+		private final boolean last;
+
+		private Chunk(File file, String plate, ImportedFile entry, PointBatch points, long offset, long line, boolean last) {
+			this.file = file;
+			this.plate = plate;
+			this.entry = entry;
+			this.points = points;
+			this.offset = offset;
+			this.line = line;
+			this.last = last;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package service.implementation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hibernate.HibernateException;
+
+import filter.Filter;
+import format.PltReader;
+import model.ImportedFile;
+import model.dto.ImportReport;
+import repository.LocationRepository;
+import repository.VehicleCatalog;
+import repository.VehicleStats;
+import service.FileService;
+import service.ImportJob;
+import util.PartitionManager;
+
+/**
+ * Loads a PLT file with PostgreSQL COPY instead of saving one entity per row.
+ * The whole file goes in a single transaction, so a cancelled import leaves nothing behind.
+ */
+public class FilePltCopyServiceImp extends FileService{
+
+	private LocationRepository locationRepository;
+	private ImportManifest importManifest;
+	private LocationExporter locationExporter;
+	private VehicleCatalog vehicleCatalog;
+
+	public FilePltCopyServiceImp() {
+		locationRepository = new LocationRepository();
+		vehicleCatalog = VehicleCatalog.getInstance();
+		importManifest = new ImportManifest();
+		locationExporter = new LocationExporter(locationRepository);
+	}
+
+	@Override
+	public Boolean importData(File file, String plate) {
+		return importData(file, plate, new ImportJob(file.getName(), null)).isSuccessful();
+	}
+
+	@Override
+	public ImportReport importData(File file, String plate, ImportJob job) {
+		job.addFiles(1);
+		try {
+			ImportedFile entry = importManifest.open(file, plate);
+			if (entry == null) {
+				job.fileSkipped(file);
+				lastReport = job.report();
+				return lastReport;
+			}
+			//the COPY runs in one transaction, its months need their partitions beforehand
+			if (PartitionManager.isEnabled())
+				PartitionManager.ensure(months(file, entry));
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				channel.position(entry.getCommittedOffset());
+				//stop at the size that was fingerprinted, rows appended meanwhile wait for the next import
+				InputStream in = new BoundedInputStream(Channels.newInputStream(channel), entry.getSize() - entry.getCommittedOffset());
+				VehicleStats stats = new VehicleStats();
+				PltCsvReader csv = new PltCsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16),
+						vehicleCatalog.idOf(plate), entry.getCommittedLine(), job, stats);
+				long rows = locationRepository.copyLocations(csv, stats, () -> {
+					entry.setCommitted(entry.getSize(), csv.getLineNumber());
+					entry.setComplete(true);
+					return entry;
+				});
+				job.committed(rows);
+				job.fileDone(plate);
+			}
+		} catch (InterruptedIOException e) {
+			//cancelled, the COPY transaction was rolled back
+		} catch (IOException e) {
+			e.printStackTrace();
+			job.fileFailed(file, e);
+		} catch (HibernateException e) {
+			e.printStackTrace();
+			job.fileFailed(file, e);
+		}
+		lastReport = job.report();
+		return lastReport;
+	}
+
+	@Override
+	public File exportData(Filter filter, File file) {
+		try {
+			lastExportRows = locationExporter.export(filter, file);
+			return file;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (HibernateException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	//months of the dates of the rows left to load, one quick pass over the file
+	private static Set<YearMonth> months(File file, ImportedFile entry) throws IOException {
+		Set<YearMonth> months = new TreeSet<YearMonth>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			channel.position(entry.getCommittedOffset());
+			InputStream in = new BoundedInputStream(Channels.newInputStream(channel), entry.getSize() - entry.getCommittedOffset());
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+			for (int i = 0; entry.getCommittedLine() == 0 && i < PltReader.HEADER_LINES; ++i)
+				reader.readLine();
+			String line;
+			String last = null;
+			while ((line = reader.readLine()) != null) {
+				//lat,lon,0,altitude,days,date,time
+				int comma = -1;
+				for (int i = 0; i < 5 && (i == 0 || comma >= 0); ++i)
+					comma = line.indexOf(',', comma + 1);
+				int date = comma + 1;
+				//malformed rows are left for the COPY reader to report
+				if (comma < 0 || line.length() < date + 7 || (last != null && line.regionMatches(date, last, 0, 7)))
+					continue;
+				last = line.substring(date, date + 7);
+				try {
+					months.add(YearMonth.parse(last));
+				} catch (DateTimeParseException e) {
+					throw new IOException(file.getName() + ": bad date in " + line);
+				}
+			}
+		}
+		return months;
+	}
+
+	private static class BoundedInputStream extends FilterInputStream {
+		private long remaining;
+
+		private BoundedInputStream(InputStream in, long length) {
+			super(in);
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0)
+				return -1;
+			int b = super.read();
+			if (b >= 0)
+				--remaining;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0)
+				return -1;
+			int read = super.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0)
+				remaining -= read;
+			return read;
+		}
+	}
+}
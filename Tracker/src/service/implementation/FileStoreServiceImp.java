@@ -0,0 +1,80 @@
+package service.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import filter.Filter;
+import format.PointBatch;
+import format.TrackFormats;
+import format.TrackReader;
+import ingest.ThinningReader;
+import model.dto.ImportReport;
+import repository.EmbeddedLocationStore;
+import service.FileService;
+import service.ImportJob;
+
+/**
+ * Imports a file of any format registered in {@link TrackFormats} into an embedded store.
+ * There is no manifest: the points read before a cancel are kept, and importing a file
+ * twice stores its points twice.
+ */
+public class FileStoreServiceImp extends FileService{
+	private static final int BATCH_SIZE = 1024;
+
+	private EmbeddedLocationStore locationStore;
+	private LocationExporter locationExporter;
+
+	public FileStoreServiceImp(EmbeddedLocationStore locationStore) {
+		this.locationStore = locationStore;
+		locationExporter = new LocationExporter(locationStore);
+	}
+
+	@Override
+	public Boolean importData(File file, String plate) {
+		return importData(file, plate, new ImportJob(file.getName(), null)).isSuccessful();
+	}
+
+	@Override
+	public ImportReport importData(File file, String plate, ImportJob job) {
+		job.addFiles(1);
+		PointBatch batch = new PointBatch(ThinningReader.outputSize(BATCH_SIZE));
+		try (TrackReader reader = TrackFormats.open(file, 0, 0)) {
+			ThinningReader points = new ThinningReader(reader, thinning, BATCH_SIZE);
+			Set<String> plates = new TreeSet<String>();
+			long parsed = 0;
+			long appended = 0;
+			while (!job.isCancelled() && points.read(batch) > 0) {
+				String batchPlate = FileTrackServiceImp.plateOf(points, plate);
+				locationStore.append(batchPlate, batch);
+				plates.add(batchPlate);
+				appended += batch.size();
+				job.parsed(points.getPointsRead() - parsed);
+				parsed = points.getPointsRead();
+			}
+			locationStore.flush();
+			job.committed(appended);
+			job.fileDone(plates.isEmpty() ? Collections.singleton(plate) : plates);
+			if (points.getThinner() != null)
+				job.fileThinned(file, points.getThinner().getStatistics());
+		} catch (IOException e) {
+			e.printStackTrace();
+			job.fileFailed(file, e);
+		}
+		lastReport = job.report();
+		return lastReport;
+	}
+
+	@Override
+	public File exportData(Filter filter, File file) {
+		try {
+			lastExportRows = locationExporter.export(filter, file);
+			return file;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,166 @@
+package service.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hibernate.HibernateException;
+
+import filter.Filter;
+import format.PointBatch;
+import format.TrackFormats;
+import format.TrackReader;
+import ingest.ThinningReader;
+import model.ImportedFile;
+import model.Location;
+import model.dto.ImportReport;
+import repository.LocationBatchWriter;
+import repository.LocationRepository;
+import repository.VehicleCatalog;
+import service.FileService;
+import service.ImportJob;
+import util.PartitionManager;
+
+/**
+ * Imports a file of any format registered in {@link TrackFormats} through the batch writer.
+ */
+public class FileTrackServiceImp extends FileService{
+	private static final int BATCH_SIZE = 1024;
+	
+	private LocationRepository locationRepository;
+	private ImportManifest importManifest;
+	private LocationExporter locationExporter;
+	private VehicleCatalog vehicleCatalog;
+	
+	public FileTrackServiceImp() {
+		locationRepository = new LocationRepository();
+		vehicleCatalog = VehicleCatalog.getInstance();
+		importManifest = new ImportManifest();
+		locationExporter = new LocationExporter(locationRepository);
+	}
+	
+	@Override
+	public Boolean importData(File file, String plate) {
+		return importData(file, plate, new ImportJob(file.getName(), null)).isSuccessful();
+	}
+	
+	/**
+	 * Commits every {@link LocationBatchWriter#CHUNK_SIZE} rows together with the manifest
+	 * checkpoint. When the job is cancelled the chunk in progress is rolled back and the
+	 * next import of the file continues after the last committed row.
+	 * Archives imported without a plate keep the plates of their tracks.
+	 */
+	@Override
+	public ImportReport importData(File file, String plate, ImportJob job) {
+		job.addFiles(1);
+		PointBatch batch = new PointBatch(ThinningReader.outputSize(BATCH_SIZE));
+		try {
+			ImportedFile entry = importManifest.open(file, plate);
+			if (entry == null) {
+				job.fileSkipped(file);
+				lastReport = job.report();
+				return lastReport;
+			}
+			try (LocationBatchWriter writer = locationRepository.openBatchWriter();
+					TrackReader reader = TrackFormats.open(file, entry.getCommittedOffset(), entry.getCommittedLine())) {
+				writer.setCheckpoint(entry);
+				ThinningReader points = new ThinningReader(reader, thinning, BATCH_SIZE);
+				Set<String> plates = new TreeSet<String>();
+				long reported = 0;
+				long parsed = 0;
+				while (!job.isCancelled() && points.read(batch) > 0) {
+					ensurePartitions(batch, writer);
+					String batchPlate = plateOf(points, plate);
+					Integer vehicleId = vehicleCatalog.idOf(batchPlate);
+					plates.add(batchPlate);
+					for (int i = 0; i < batch.size(); ++i) {
+						entry.setCommitted(batch.getOffset(i), batch.getLine(i));
+						writer.write(toLocation(batch, i, vehicleId));
+					}
+					job.parsed(points.getPointsRead() - parsed);
+					parsed = points.getPointsRead();
+					if (writer.getCommittedRows() > reported) {
+						job.committed(writer.getCommittedRows() - reported);
+						reported = writer.getCommittedRows();
+					}
+				}
+				if (!job.isCancelled()) {
+					entry.setCommitted(reader.getPosition(), reader.getLine());
+					entry.setComplete(true);
+					writer.finish();
+					job.committed(writer.getCommittedRows() - reported);
+					job.fileDone(plates.isEmpty() ? Collections.singleton(plate) : plates);
+					if (points.getThinner() != null)
+						job.fileThinned(file, points.getThinner().getStatistics());
+				}
+				else if (reported > 0)
+					job.fileDone(plates);
+			}
+        } catch (IOException e) {
+            e.printStackTrace();
+            job.fileFailed(file, e);
+        } catch (HibernateException e) {
+            //rows of the failed chunk are rolled back when the writer is closed
+            e.printStackTrace();
+            job.fileFailed(file, e);
+        }
+		lastReport = job.report();
+		return lastReport;
+	}
+	
+	//a new month's partition is created with nothing pending, see PartitionManager.ensure
+	static void ensurePartitions(PointBatch batch, LocationBatchWriter writer) {
+		if (batch.size() == 0)
+			return;
+		long from = Long.MAX_VALUE, to = Long.MIN_VALUE;
+		for (int i = 0; i < batch.size(); ++i) {
+			from = Math.min(from, batch.getTime(i));
+			to = Math.max(to, batch.getTime(i));
+		}
+		if (!PartitionManager.covers(from, to)) {
+			writer.commit();
+			PartitionManager.ensure(from, to);
+		}
+	}
+	
+	//archives name the track of every batch, used when no plate is given
+	static String plateOf(ThinningReader points, String plate) {
+		if ((plate == null || plate.isEmpty()) && points.getTrack() != null)
+			return points.getTrack();
+		return plate;
+	}
+	
+	ImportManifest getImportManifest() {
+		return importManifest;
+	}
+	
+	static Location toLocation(PointBatch batch, int i, Integer vehicleId) {
+		Location l = new Location();
+		long time = batch.getTime(i);
+		
+		l.setLatitude(batch.getLatitude(i));
+		l.setLongitude(batch.getLongitude(i));
+		l.setAltitude(batch.getAltitude(i));
+		l.setDate(LocalDate.ofEpochDay(Math.floorDiv(time, 86400)));
+		l.setTime(LocalTime.ofSecondOfDay(Math.floorMod(time, 86400)));
+		l.setVehicleId(vehicleId);
+		return l;
+	}
+
+	@Override
+	public File exportData(Filter filter, File file) {
+		try {
+			lastExportRows = locationExporter.export(filter, file);
+			return file;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (HibernateException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+}
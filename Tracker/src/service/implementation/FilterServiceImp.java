@@ -1,30 +1,62 @@
 package service.implementation;
 
 import java.sql.Date;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 import filter.*;
+import model.dto.BoundingBox;
 import service.FilterService;
 
 public class FilterServiceImp implements FilterService{
 	@Override
 	public Filter setFilters(String dateFrom, String dateTo, String plate) {
+		return setFilters(dateFrom, dateTo, plate, null, null);
+	}
+	
+	/**
+	 * Dates are yyyy-MM-dd for whole days or yyyy-MM-dd HH:mm[:ss] for exact datetimes,
+	 * times of day HH:mm[:ss]. A time of day window needs both ends.
+	 */
+	@Override
+	public Filter setFilters(String dateFrom, String dateTo, String plate, String timeFrom, String timeTo) {
+		return setFilters(dateFrom, dateTo, plate, timeFrom, timeTo, null);
+	}
+	
+	//only the locations inside the area when there is one
+	@Override
+	public Filter setFilters(String dateFrom, String dateTo, String plate, String timeFrom, String timeTo, BoundingBox area) {
 		Filter filter = null;
 		if (dateFrom != null) {
-			filter = new FromDateFilter(Date.valueOf(dateFrom));
-			if (dateTo != null)
-				filter = new AndFilter(filter, new ToDateFilter(Date.valueOf(dateTo)));
-			if (plate != null)
-				filter = new AndFilter(filter, new PlateFilter(plate));
-			return filter;
+			if (isDateTime(dateFrom))
+				filter = and(filter, new FromTimestampFilter(parseDateTime(dateFrom)));
+			else
+				filter = and(filter, new FromDateFilter(Date.valueOf(dateFrom)));
 		}
-		else if (dateTo != null) {
-			filter = new ToDateFilter(Date.valueOf(dateTo));
-			if (plate != null)
-				filter = new AndFilter(filter, new PlateFilter(plate));
-			return filter;
+		if (dateTo != null) {
+			if (isDateTime(dateTo))
+				filter = and(filter, new ToTimestampFilter(parseDateTime(dateTo)));
+			else
+				filter = and(filter, new ToDateFilter(Date.valueOf(dateTo)));
 		}
+		if (timeFrom != null && timeTo != null)
+			filter = and(filter, new TimeOfDayFilter(LocalTime.parse(timeFrom.trim()), LocalTime.parse(timeTo.trim())));
 		if (plate != null)
-			filter = new PlateFilter(plate);
+			filter = and(filter, new PlateFilter(plate));
+		if (area != null)
+			filter = and(filter, new BoundingBoxFilter(area));
 		return filter;
 	}
+	
+	private static Filter and(Filter filter, Filter term) {
+		return filter == null ? term : new AndFilter(filter, term);
+	}
+	
+	private static boolean isDateTime(String date) {
+		return date.trim().length() > 10;
+	}
+	
+	private static LocalDateTime parseDateTime(String dateTime) {
+		return LocalDateTime.parse(dateTime.trim().replace(' ', 'T'));
+	}
 }
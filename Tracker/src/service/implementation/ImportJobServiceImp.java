@@ -0,0 +1,61 @@
+package service.implementation;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import model.dto.ImportReport;
+import service.ImportJob;
+import service.ImportJobService;
+import service.ImportListener;
+
+/**
+ * Runs imports one after another on a background thread, in the order they were submitted.
+ */
+public class ImportJobServiceImp implements ImportJobService {
+	private final ExecutorService executor;
+	private final Queue<ImportJob> jobs = new ConcurrentLinkedQueue<ImportJob>();
+
+	public ImportJobServiceImp() {
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "import");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public ImportJob submit(String name, ImportListener listener, Function<ImportJob, ImportReport> work) {
+		ImportJob job = new ImportJob(name, listener);
+		jobs.add(job);
+		executor.submit(() -> run(job, work));
+		return job;
+	}
+
+	@Override
+	public void cancelAll() {
+		for (ImportJob job : jobs)
+			job.cancel();
+	}
+
+	private void run(ImportJob job, Function<ImportJob, ImportReport> work) {
+		ImportReport report;
+		try {
+			if (job.isCancelled())
+				report = job.report();
+			else
+				report = work.apply(job);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			ImportReport partial = job.report();
+			report = new ImportReport(job.getName(), partial.getRows(), partial.getElapsedNanos(),
+					Collections.singletonList(e.toString()), job.isCancelled(), partial.getThinning());
+		} finally {
+			jobs.remove(job);
+		}
+		job.finish(report);
+	}
+}
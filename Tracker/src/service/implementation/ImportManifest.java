@@ -0,0 +1,59 @@
+package service.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import model.ImportedFile;
+import repository.ImportedFileRepository;
+import util.Fingerprint;
+
+/**
+ * Compares a file with its manifest entry to find out how much of it still has to be imported.
+ */
+class ImportManifest {
+	private ImportedFileRepository importedFileRepository;
+	
+	ImportManifest() {
+		importedFileRepository = new ImportedFileRepository();
+	}
+	
+	/**
+	 * @return the entry to import against, positioned after the last committed row, or
+	 * null when the file has not changed since it was completely imported
+	 * @throws IOException if the file was modified before its end at the last import
+	 */
+	ImportedFile open(File file, String plate) throws IOException {
+		String path = file.getCanonicalPath();
+		long size = file.length();
+		long modified = file.lastModified();
+		ImportedFile entry = importedFileRepository.getImportedFile(path);
+		if (entry != null && entry.isComplete() && entry.getSize() == size && entry.getModified() == modified)
+			return null;
+		
+		MessageDigest digest = Fingerprint.sha256();
+		if (entry != null) {
+			//only appending keeps the rows imported before valid
+			if (size < entry.getSize())
+				throw changed(file);
+			Fingerprint.update(digest, file, 0, entry.getSize());
+			if (!Fingerprint.hex(digest).equals(entry.getHash()))
+				throw changed(file);
+			Fingerprint.update(digest, file, entry.getSize(), size);
+		}
+		else {
+			entry = new ImportedFile(path, plate);
+			Fingerprint.update(digest, file, 0, size);
+		}
+		entry.setSize(size);
+		entry.setModified(modified);
+		entry.setHash(Fingerprint.hex(digest));
+		entry.setComplete(false);
+		return entry;
+	}
+	
+	private IOException changed(File file) {
+		return new IOException(file.getName() + " changed since it was imported, "
+				+ "remove it from the imported_file manifest to import it again");
+	}
+}
@@ -0,0 +1,64 @@
+package service.implementation;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+import filter.Filter;
+import format.PointBatch;
+import format.TrackFormat;
+import format.TrackFormats;
+import format.TrackWriter;
+import repository.LocationCursor;
+import repository.LocationStore;
+
+/**
+ * Streams the locations matching a filter from a store cursor into a file, in the
+ * format of its extension. Only a cursor page and one batch of points are held at a time.
+ */
+class LocationExporter {
+	private static final int BATCH_SIZE = 1024;
+
+	private LocationStore locationStore;
+
+	LocationExporter(LocationStore locationStore) {
+		this.locationStore = locationStore;
+	}
+
+	/**
+	 * @return the number of locations written
+	 */
+	long export(Filter filter, File file) throws IOException {
+		TrackFormat format = TrackFormats.forName(file.getName());
+		if (format == null)
+			throw new IOException(file.getName() + " has no supported extension, use one of " + TrackFormats.getExtensions());
+		long rows = 0;
+		PointBatch batch = new PointBatch(BATCH_SIZE);
+		try (LocationCursor cursor = locationStore.openCursor(filter);
+				TrackWriter writer = format.createWriter(new BufferedOutputStream(new FileOutputStream(file)))) {
+			String plate = null;
+			boolean started = false;
+			while (cursor.next()) {
+				//one track per plate, rows come ordered by plate
+				boolean newTrack = !started || !Objects.equals(cursor.getPlate(), plate);
+				if ((newTrack || batch.isFull()) && batch.size() > 0) {
+					writer.write(batch);
+					batch.clear();
+				}
+				if (newTrack) {
+					plate = cursor.getPlate();
+					started = true;
+					//locations without a vehicle make an unnamed track
+					writer.startTrack(plate == null ? "" : plate);
+				}
+				batch.add(cursor.getLatitude(), cursor.getLongitude(), cursor.getAltitude(), cursor.getEpochSecond(), rows, 0);
+				++rows;
+			}
+			if (batch.size() > 0)
+				writer.write(batch);
+		}
+		return rows;
+	}
+}
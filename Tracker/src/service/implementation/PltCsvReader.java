@@ -0,0 +1,161 @@
+package service.implementation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+import format.PltReader;
+import model.Vehicle;
+import repository.VehicleStats;
+import service.ImportJob;
+import util.MortonCode;
+
+/**
+ * Turns the rows of a PLT file into CSV rows for
+ * {@code COPY location (vehicle_id, latitude, longitude, altitude, date, time, timestamp, cell)}.
+ * Fields are copied as text, only the position is parsed for its grid cell, its map
+ * tile and the vehicle summary, which goes to the stats once the last row is read.
+ */
+class PltCsvReader extends Reader {
+	private final BufferedReader in;
+	private final Integer vehicleId;
+	private final ImportJob job;
+	private final VehicleStats stats;
+	private Vehicle summary;
+	//"date,time" of the first and last rows in time, they sort as text
+	private String first;
+	private String last;
+	//of the last row, rows of a file mostly share it
+	private YearMonth month;
+	private String monthText;
+	private final StringBuilder row = new StringBuilder(128);
+	private final int[] commas = new int[6];
+	private int rowPosition;
+	private long lineNumber;
+	private long rows;
+
+	/**
+	 * @param line lines already consumed before the reader's position, 0 at the start of the file
+	 */
+	PltCsvReader(BufferedReader in, Integer vehicleId, long line, ImportJob job, VehicleStats stats) throws IOException {
+		this.in = in;
+		this.vehicleId = vehicleId;
+		this.job = job;
+		this.stats = stats;
+		summary = new Vehicle(vehicleId, null);
+		lineNumber = line;
+		for (int i = 0; line == 0 && i < PltReader.HEADER_LINES; ++i) {
+			in.readLine();
+			++lineNumber;
+		}
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		int n = 0;
+		while (n < len) {
+			if (rowPosition == row.length() && !nextRow())
+				break;
+			int count = Math.min(len - n, row.length() - rowPosition);
+			row.getChars(rowPosition, rowPosition + count, cbuf, off + n);
+			rowPosition += count;
+			n += count;
+		}
+		return (n == 0 && len > 0) ? -1 : n;
+	}
+
+	private boolean nextRow() throws IOException {
+		if (job.isCancelled())
+			throw new InterruptedIOException("import cancelled");
+		String line;
+		do {
+			line = in.readLine();
+			if (line == null) {
+				finish();
+				return false;
+			}
+			++lineNumber;
+		} while (line.isEmpty());
+
+		//lat,lon,0,altitude,days,date,time
+		int from = 0;
+		for (int i = 0; i < commas.length; ++i) {
+			commas[i] = line.indexOf(',', from);
+			if (commas[i] < 0)
+				throw new IOException("line " + lineNumber + ": expected 7 fields");
+			from = commas[i] + 1;
+		}
+		double lat, lon;
+		try {
+			lat = Double.parseDouble(line.substring(0, commas[0]));
+			lon = Double.parseDouble(line.substring(commas[0] + 1, commas[1]));
+		} catch (NumberFormatException e) {
+			throw new IOException("line " + lineNumber + ": " + e.getMessage());
+		}
+		summary.addPoint(lat, lon, null);
+		stats.addTile(vehicleId, lat, lon, month(line, commas[4] + 1));
+		String dateTime = line.substring(commas[4] + 1);
+		if (first == null || dateTime.compareTo(first) < 0)
+			first = dateTime;
+		if (last == null || dateTime.compareTo(last) > 0)
+			last = dateTime;
+		row.setLength(0);
+		rowPosition = 0;
+		row.append(vehicleId).append(',')
+			.append(line, 0, commas[0]).append(',')
+			.append(line, commas[0] + 1, commas[1]).append(',')
+			.append(line, commas[2] + 1, commas[3]).append(',')
+			.append(line, commas[4] + 1, commas[5]).append(',')
+			.append(line, commas[5] + 1, line.length()).append(',')
+			//date and time again as the timestamp
+			.append(line, commas[4] + 1, commas[5]).append(' ')
+			.append(line, commas[5] + 1, line.length()).append(',')
+			.append(MortonCode.of(lat, lon)).append('\n');
+		if (++rows % 1024 == 0)
+			job.parsed(1024);
+		return true;
+	}
+
+	//the date field starts with yyyy-MM
+	private YearMonth month(String line, int from) throws IOException {
+		if (monthText != null && line.startsWith(monthText, from))
+			return month;
+		try {
+			monthText = line.substring(from, Math.min(from + 7, line.length()));
+			month = YearMonth.parse(monthText);
+		} catch (DateTimeParseException e) {
+			monthText = null;
+			throw new IOException("line " + lineNumber + ": " + e.getMessage());
+		}
+		return month;
+	}
+
+	long getRows() {
+		return rows;
+	}
+
+	long getLineNumber() {
+		return lineNumber;
+	}
+
+	//once, read returns -1 again when asked past the end
+	private void finish() {
+		if (summary == null)
+			return;
+		if (first != null) {
+			summary.addTime(Timestamp.valueOf(first.replace(',', ' ')));
+			summary.addTime(Timestamp.valueOf(last.replace(',', ' ')));
+			stats.add(summary);
+		}
+		summary = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -8,32 +8,111 @@ import java.util.TreeSet;
 import comparator.CoordinateComparator;
 import filter.Filter;
 import model.Location;
+import model.Vehicle;
 import model.dto.Coordinate;
-import repository.LocationRepository;
+import model.dto.CoordinateArray;
+import model.dto.LocationKey;
+import model.dto.TileCount;
+import model.dto.TrajectoryBuffer;
+import repository.LocationCursor;
+import repository.LocationStore;
+import repository.LocationStores;
+import repository.QueryCache;
 import service.TrajectoryService;
 
 public class TrajectoryServiceImp implements TrajectoryService{
-	private LocationRepository locationRepository;
+	//what a cached result takes a point: the primitive arrays, and for a cell set a tree
+	//node, a Coordinate and its Point2D.Double, some 100 bytes with 64 bit references
+	private static final long COORDINATE_BYTES = 16;
+	private static final long TRAJECTORY_POINT_BYTES = 24;
+	private static final long CELL_BYTES = 104;
+	private LocationStore locationStore;
+	private QueryCache queryCache;
 	
 	public TrajectoryServiceImp() {
-		locationRepository = new LocationRepository();
+		this(LocationStores.getDefault());
+	}
+	
+	//only the default store's results are cached, the cache knows when it changes
+	public TrajectoryServiceImp(LocationStore locationStore) {
+		this.locationStore = locationStore;
+		if (locationStore == LocationStores.getDefault())
+			queryCache = QueryCache.getInstance();
 	}
 
 	@Override
 	public List<String> getPlates() {
-		return locationRepository.getPlates();
+		return locationStore.getPlates();
+	}
+	
+	//point count, first and last seen and bounds of the plate, null when unknown
+	@Override
+	public Vehicle getVehicle(String plate) {
+		return locationStore.getVehicle(plate);
+	}
+	
+	/**
+	 * Points by map tile, for every plate when it is null: a density map, or the places
+	 * a vehicle went, without reading its locations.
+	 */
+	@Override
+	public List<TileCount> getTileCounts(String plate, Integer zoom) {
+		return locationStore.getTileCounts(plate, zoom);
 	}
 
 	@Override
 	public List<Coordinate> getTrajectory(Filter filter) {
-		List<Location> result = locationRepository.getLocations(filter);
-		return this.toCoordinateList(result);
+		return getCoordinates(filter).toCoordinateList();
+	}
+
+	/**
+	 * At most budget points of every vehicle's trajectory, picked to keep its shape, for
+	 * display. Points less than metersPerPixel apart are dropped first when it is given.
+	 * Without a budget every point is kept, as getTrajectory(filter).
+	 */
+	@Override
+	public List<Coordinate> getTrajectory(Filter filter, Integer budget, Double metersPerPixel) {
+		return TrajectoryBuffer.toCoordinateList(getTrajectories(filter, budget, metersPerPixel));
+	}
+	
+	/**
+	 * A buffer a vehicle, in primitive arrays: the way to hold a long trajectory. The
+	 * buffers may be cached, they are not to be added to.
+	 */
+	@Override
+	public List<TrajectoryBuffer> getTrajectories(Filter filter) {
+		if (queryCache == null)
+			return locationStore.getTrajectories(filter);
+		return queryCache.get("trajectories", filter, null, () -> locationStore.getTrajectories(filter), t -> TRAJECTORY_POINT_BYTES * TrajectoryBuffer.size(t));
+	}
+	
+	//decimated as getTrajectory with a budget, all of them without one
+	@Override
+	public List<TrajectoryBuffer> getTrajectories(Filter filter, Integer budget, Double metersPerPixel) {
+		if (budget == null)
+			return getTrajectories(filter);
+		double pixel = metersPerPixel == null ? 0 : metersPerPixel;
+		return locationStore.getTrajectories(filter, budget, pixel);
 	}
 
 	@Override
 	public List<Coordinate> getAllTrajectories() {
-		List<Location> result = locationRepository.getAll();
-		return this.toCoordinateList(result);
+		return getCoordinates(null).toCoordinateList();
+	}
+	
+	//cached until an import touches the plate or dates of the filter
+	private CoordinateArray getCoordinates(Filter filter) {
+		if (queryCache == null)
+			return locationStore.getCoordinates(filter);
+		return queryCache.get("coordinates", filter, null, () -> locationStore.getCoordinates(filter), c -> COORDINATE_BYTES * c.size());
+	}
+	
+	/**
+	 * Pages through the locations in time order, null for the first page.
+	 */
+	@Override
+	public List<Location> getLocationPage(Filter filter, LocationKey after, Integer size) {
+		return locationStore.getLocationPage(filter, after, size);
 	}
 	
 	@Override
@@ -54,18 +133,51 @@ public class TrajectoryServiceImp implements TrajectoryService{
 		return set;
 	}
 	
+	/**
+	 * Same as setPrecision followed by getSortedSetLocations, but the locations are
+	 * streamed from the store so only the set is kept in memory.
+	 */
+	@Override
+	public SortedSet<Coordinate> getSortedSetLocations(Filter filter, Integer precision) {
+		if (queryCache == null)
+			return loadSortedSetLocations(filter, precision);
+		//a copy, callers change the set
+		return new TreeSet<Coordinate>(queryCache.get("cells", filter, precision, () -> loadSortedSetLocations(filter, precision), s -> CELL_BYTES * s.size()));
+	}
+	
+	private SortedSet<Coordinate> loadSortedSetLocations(Filter filter, Integer precision) {
+		SortedSet<Coordinate> set = new TreeSet<Coordinate>(new CoordinateComparator());
+		try (LocationCursor cursor = locationStore.openCursor(filter)) {
+			while (cursor.next())
+				set.add(new Coordinate(round(cursor.getLatitude(), precision), round(cursor.getLongitude(), precision)));
+		}
+		return set;
+	}
+	
+	//setPrecision followed by getSortedSetLocations, without a list of every point
+	@Override
+	public SortedSet<Coordinate> getSortedSetLocations(List<TrajectoryBuffer> trajectories, Integer precision) {
+		SortedSet<Coordinate> set = new TreeSet<Coordinate>(new CoordinateComparator());
+		for (TrajectoryBuffer trajectory : trajectories)
+			for (int i = 0; i < trajectory.size(); ++i)
+				set.add(new Coordinate(round(trajectory.getLatitude(i), precision), round(trajectory.getLongitude(i), precision)));
+		return set;
+	}
+	
 	@Override
 	public List<Coordinate> setPrecision(List<Coordinate> trajectory, Integer precision) {
 		List<Coordinate> result = new ArrayList<Coordinate>();
 		for (Coordinate coordinate : trajectory) {
-			double lat = coordinate.getLat();
-			double lon = coordinate.getLon();
-			lat = Double.parseDouble(String.format("%."+ precision +"f", lat));
-			lon = Double.parseDouble(String.format("%."+ precision +"f", lon));
+			double lat = round(coordinate.getLat(), precision);
+			double lon = round(coordinate.getLon(), precision);
 			Coordinate coor = new Coordinate(lat,lon);
 			result.add(coor);
 		}
 		return result;
 	}
 	
+	private static double round(double value, Integer precision) {
+		return Double.parseDouble(String.format("%."+ precision +"f", value));
+	}
+	
 }
@@ -0,0 +1,323 @@
+package util;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Pooled {@link DataSource} over the JDBC driver. Connections are handed out as proxies
+ * whose {@code close()} returns them to the pool; the most recently returned idle
+ * connection is reused first, so server-side prepared statements cached by the driver
+ * stay warm. A housekeeping thread retires idle and old connections, keeps the minimum
+ * size and reports connections held longer than the leak detection threshold.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+	//connections idle for longer are checked before being handed out
+	private static final long VALIDATION_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+	private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+	private final String url;
+	private final Properties driverProperties;
+	private final int minSize;
+	private final long connectionTimeoutMillis;
+	private final long idleTimeoutNanos;
+	private final long maxLifetimeNanos;
+	private final long leakThresholdNanos;
+
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+	private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService housekeeper;
+	private volatile boolean closed;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicLong borrows = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong leaks = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/**
+	 * Opens the minimum number of connections right away, so a wrong URL or credentials
+	 * fail here rather than at the first query.
+	 */
+	public ConnectionPool(PersistenceConfig config) throws SQLException {
+		url = config.getUrl();
+		driverProperties = config.getDriverProperties();
+		minSize = config.getMinSize();
+		connectionTimeoutMillis = config.getConnectionTimeoutMillis();
+		idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+		maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxLifetimeMillis());
+		leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getLeakDetectionThresholdMillis());
+		permits = new Semaphore(config.getMaxSize(), true);
+
+		for (int i = 0; i < Math.max(1, minSize); ++i) {
+			try {
+				idle.add(new PooledConnection(DriverManager.getConnection(url, driverProperties)));
+			} catch (SQLException e) {
+				closeAll();
+				throw e;
+			}
+		}
+		housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1000, Math.min(30000, config.getLeakDetectionThresholdMillis() > 0 ? config.getLeakDetectionThresholdMillis() / 2 : 30000));
+		housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (closed)
+			throw new SQLException("connection pool is closed");
+		long start = System.nanoTime();
+		waiting.incrementAndGet();
+		try {
+			if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLTransientConnectionException("no connection available within " + connectionTimeoutMillis + " ms (" + getMetrics() + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting for a connection", e);
+		} finally {
+			waiting.decrementAndGet();
+		}
+		try {
+			PooledConnection connection = take();
+			long waited = System.nanoTime() - start;
+			borrows.incrementAndGet();
+			totalWaitNanos.addAndGet(waited);
+			maxWaitNanos.accumulateAndGet(waited, Math::max);
+			connection.borrow(leakThresholdNanos > 0 ? new Exception("connection borrowed here") : null);
+			active.add(connection);
+			return connection.proxy;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	//an idle connection still usable, or a new one
+	private PooledConnection take() throws SQLException {
+		PooledConnection connection;
+		while ((connection = idle.pollFirst()) != null) {
+			long now = System.nanoTime();
+			if (now - connection.created > maxLifetimeNanos)
+				connection.closePhysically();
+			else if (now - connection.lastUsed > VALIDATION_INTERVAL && !connection.isValid())
+				connection.closePhysically();
+			else
+				return connection;
+		}
+		return new PooledConnection(DriverManager.getConnection(url, driverProperties));
+	}
+
+	private void release(PooledConnection connection) {
+		active.remove(connection);
+		try {
+			if (closed || System.nanoTime() - connection.created > maxLifetimeNanos || connection.connection.isClosed())
+				connection.closePhysically();
+			else {
+				connection.reset();
+				idle.offerFirst(connection);
+			}
+		} catch (SQLException e) {
+			connection.closePhysically();
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void housekeep() {
+		long now = System.nanoTime();
+		//oldest idle connections are at the tail
+		int surplus = idle.size() - minSize;
+		for (PooledConnection connection : idle) {
+			boolean expired = now - connection.created > maxLifetimeNanos;
+			boolean unused = surplus > 0 && idleTimeoutNanos > 0 && now - connection.lastUsed > idleTimeoutNanos;
+			if ((expired || unused) && idle.remove(connection)) {
+				connection.closePhysically();
+				--surplus;
+			}
+		}
+		try {
+			while (!closed && idle.size() + active.size() < minSize)
+				idle.offerLast(new PooledConnection(DriverManager.getConnection(url, driverProperties)));
+		} catch (SQLException e) {
+			System.err.println("Connection pool could not open a connection: " + e.getMessage());
+		}
+		if (leakThresholdNanos > 0) {
+			for (PooledConnection connection : active) {
+				if (!connection.leakReported && now - connection.borrowed > leakThresholdNanos) {
+					connection.leakReported = true;
+					leaks.incrementAndGet();
+					Exception borrowed = connection.borrowSite;
+					System.err.println("Connection held for more than " + TimeUnit.NANOSECONDS.toMillis(leakThresholdNanos) + " ms, possible leak");
+					if (borrowed != null)
+						borrowed.printStackTrace();
+				}
+			}
+		}
+	}
+
+	public PoolMetrics getMetrics() {
+		return new PoolMetrics(active.size(), idle.size(), waiting.get(), borrows.get(), timeouts.get(), leaks.get(),
+				totalWaitNanos.get(), maxWaitNanos.get());
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (housekeeper != null)
+			housekeeper.shutdownNow();
+		closeAll();
+	}
+
+	//active connections are closed when they are returned
+	private void closeAll() {
+		PooledConnection connection;
+		while ((connection = idle.pollFirst()) != null)
+			connection.closePhysically();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("the pool has fixed credentials");
+	}
+
+	@Override
+	public PrintWriter getLogWriter() {
+		return null;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) {
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) {
+	}
+
+	@Override
+	public int getLoginTimeout() {
+		return 0;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException("not a wrapper of " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return iface.isInstance(this);
+	}
+
+	private class PooledConnection implements InvocationHandler {
+		private final Connection connection;
+		private final Connection proxy;
+		private final long created = System.nanoTime();
+		private volatile long lastUsed = created;
+		private volatile long borrowed;
+		private volatile Exception borrowSite;
+		private volatile boolean leakReported;
+		//true while the proxy is handed out
+		private volatile boolean inUse;
+
+		private PooledConnection(Connection connection) {
+			this.connection = connection;
+			proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, this);
+		}
+
+		private void borrow(Exception site) {
+			borrowed = System.nanoTime();
+			borrowSite = site;
+			leakReported = false;
+			inUse = true;
+		}
+
+		//undo what the borrower may have left behind
+		private void reset() throws SQLException {
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+			connection.clearWarnings();
+			lastUsed = System.nanoTime();
+		}
+
+		private boolean isValid() {
+			try {
+				return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		private void closePhysically() {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				//already broken
+			}
+		}
+
+		@Override
+		public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (inUse) {
+					inUse = false;
+					release(this);
+				}
+				return null;
+			case "isClosed":
+				return !inUse || connection.isClosed();
+			case "equals":
+				return target == args[0];
+			case "hashCode":
+				return System.identityHashCode(target);
+			case "toString":
+				return "pooled " + connection;
+			default:
+				if (!inUse)
+					throw new SQLException("connection is closed");
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class Fingerprint {
+	
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+	
+	/**
+	 * Feeds the bytes [from, to) of the file to the digest.
+	 */
+	public static void update(MessageDigest digest, File file, long from, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long position = from;
+			while (position < to) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), to - position));
+				int read = channel.read(buffer, position);
+				if (read < 0)
+					throw new IOException(file.getName() + " is shorter than " + to + " bytes");
+				digest.update(buffer.array(), 0, read);
+				position += read;
+			}
+		}
+	}
+	
+	//hex of the digest so far, the digest itself can still be updated
+	public static String hex(MessageDigest digest) {
+		byte[] hash;
+		try {
+			hash = ((MessageDigest) digest.clone()).digest();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b : hash)
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return hex.toString();
+	}
+}
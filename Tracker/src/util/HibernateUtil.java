@@ -1,5 +1,6 @@
 package util;
 
+import java.sql.SQLException;
 import java.util.Properties;
 
 import org.hibernate.SessionFactory;
@@ -8,38 +9,84 @@ import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
 import org.hibernate.service.ServiceRegistry;
 
+import model.ImportedFile;
 import model.Location;
+import model.Vehicle;
 
 public class HibernateUtil {
+	public static final int BATCH_SIZE = 50;
+	
 	private static SessionFactory sessionFactory;
-    public static SessionFactory getSessionFactory() {
+	private static volatile ConnectionPool connectionPool;
+	private static volatile int maxPoolSize;
+	
+	/**
+	 * @throws IllegalStateException if the configuration is missing or the database cannot be reached
+	 */
+    public static synchronized SessionFactory getSessionFactory() {
         if (sessionFactory == null) {
+            PersistenceConfig config = PersistenceConfig.load();
+            ConnectionPool pool;
+            try {
+                pool = new ConnectionPool(config);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not connect to " + config.getUrl() + " as configured in "
+                        + config.getSource() + ": " + e.getMessage(), e);
+            }
             try {
                 Configuration configuration = new Configuration();
                 
                 // Hibernate settings equivalent to hibernate.cfg.xml's properties
                 Properties settings = new Properties();
-                settings.put(Environment.DRIVER, "org.postgresql.Driver");
-                settings.put(Environment.URL, "jdbc:postgresql://localhost:5432/Tracker");
-                settings.put(Environment.USER, "postgres");
-                settings.put(Environment.PASS, "starwars");
-                settings.put(Environment.POOL_SIZE, "10");
+                settings.put(Environment.DATASOURCE, pool);
                 settings.put(Environment.DIALECT, "org.hibernate.dialect.PostgreSQLDialect");
-                settings.put(Environment.SHOW_SQL, "true");
+                settings.put(Environment.SHOW_SQL, "false");
                 settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
                 settings.put(Environment.HBM2DDL_AUTO, "update");
+                settings.put(Environment.STATEMENT_BATCH_SIZE, String.valueOf(BATCH_SIZE));
+                settings.put(Environment.ORDER_INSERTS, "true");
+                //hibernate.* keys of the configuration file win
+                settings.putAll(config.getHibernateProperties());
                 configuration.setProperties(settings);
                 
                 //Entities to connect with database
                 configuration.addAnnotatedClass(Location.class);
+                configuration.addAnnotatedClass(ImportedFile.class);
+                configuration.addAnnotatedClass(Vehicle.class);
                 
                 ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
                     .applySettings(configuration.getProperties()).build();
-                sessionFactory = configuration.buildSessionFactory(serviceRegistry);
-            } catch (Exception e) {
-                e.printStackTrace();
+                SessionFactory factory = configuration.buildSessionFactory(serviceRegistry);
+                try {
+                    SchemaMigration.migrate(factory);
+                    PartitionManager.start(factory, config.getPartitioning().equals("month"));
+                } catch (RuntimeException e) {
+                    factory.close();
+                    throw e;
+                }
+                sessionFactory = factory;
+                connectionPool = pool;
+                maxPoolSize = config.getMaxSize();
+            } catch (RuntimeException e) {
+                pool.close();
+                throw new IllegalStateException("Could not start Hibernate: " + e.getMessage(), e);
             }
         }
         return sessionFactory;
     }
+    
+    /**
+     * @return the pool counters, null before the first session factory is built
+     */
+    public static PoolMetrics getPoolMetrics() {
+        ConnectionPool pool = connectionPool;
+        return pool == null ? null : pool.getMetrics();
+    }
+    
+    /**
+     * @return the most connections the pool opens, 0 before the first session factory is built
+     */
+    public static int getMaxPoolSize() {
+        return maxPoolSize;
+    }
 }
@@ -0,0 +1,116 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grid cells of {@link #BITS} bits a side over latitude and longitude, numbered along a
+ * Z-order curve so cells close on the map mostly get close numbers. A box is covered by
+ * a few ranges of cell numbers, each one a range scan of the location_cell_idx index.
+ */
+public class MortonCode {
+	public static final int BITS = 16;
+	private static final int CELLS = 1 << BITS;
+
+	private MortonCode() {
+	}
+
+	//the cell of the point, longitude in the even bits
+	public static long of(double lat, double lon) {
+		return interleave(x(lon)) | interleave(y(lat)) << 1;
+	}
+
+	/**
+	 * Ranges {first, last} of the cells overlapping the box, in order and merged. The box
+	 * is split quadrant by quadrant until maxRanges would be exceeded, the cells still
+	 * straddling its edge are taken whole, so the cover holds every point of the box and
+	 * some points around it. A box with west after east runs over the antimeridian.
+	 */
+	public static List<long[]> cover(double south, double west, double north, double east, int maxRanges) {
+		if (west > east) {
+			List<long[]> ranges = cover(south, west, north, 180, maxRanges / 2);
+			ranges.addAll(cover(south, -180, north, east, maxRanges - maxRanges / 2));
+			return merge(ranges);
+		}
+		int x0 = x(west), x1 = x(east), y0 = y(south), y1 = y(north);
+		List<long[]> ranges = new ArrayList<long[]>();
+		//quadrants straddling the box edge, as {code prefix, level}
+		List<long[]> partial = new ArrayList<long[]>();
+		partial.add(new long[] {0, 0});
+		for (int level = 0; level < BITS && !partial.isEmpty(); ++level) {
+			List<long[]> next = new ArrayList<long[]>();
+			for (long[] quadrant : partial) {
+				for (int child = 0; child < 4; ++child) {
+					long prefix = quadrant[0] << 2 | child;
+					int shift = BITS - level - 1;
+					int cx0 = deinterleave(prefix) << shift, cy0 = deinterleave(prefix >>> 1) << shift;
+					int cx1 = cx0 + (1 << shift) - 1, cy1 = cy0 + (1 << shift) - 1;
+					if (cx1 < x0 || cx0 > x1 || cy1 < y0 || cy0 > y1)
+						continue;
+					if (cx0 >= x0 && cx1 <= x1 && cy0 >= y0 && cy1 <= y1)
+						ranges.add(range(prefix, shift));
+					else
+						next.add(new long[] {prefix, shift});
+				}
+			}
+			partial = next;
+			if (ranges.size() + partial.size() * 4 > maxRanges)
+				break;
+		}
+		for (long[] quadrant : partial)
+			ranges.add(range(quadrant[0], (int) quadrant[1]));
+		return merge(ranges);
+	}
+
+	private static long[] range(long prefix, int shift) {
+		long first = prefix << 2 * shift;
+		return new long[] {first, first + (1L << 2 * shift) - 1};
+	}
+
+	//sorts the ranges and joins the ones that touch
+	private static List<long[]> merge(List<long[]> ranges) {
+		ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+		List<long[]> merged = new ArrayList<long[]>();
+		for (long[] range : ranges) {
+			long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && range[0] <= last[1] + 1)
+				last[1] = Math.max(last[1], range[1]);
+			else
+				merged.add(range);
+		}
+		return merged;
+	}
+
+	private static int x(double lon) {
+		return clamp((lon + 180) / 360 * CELLS);
+	}
+
+	private static int y(double lat) {
+		return clamp((lat + 90) / 180 * CELLS);
+	}
+
+	private static int clamp(double cell) {
+		return (int) Math.max(0, Math.min(CELLS - 1, Math.floor(cell)));
+	}
+
+	//spreads the bits of v over the even bits
+	private static long interleave(long v) {
+		v = (v | v << 16) & 0x0000FFFF0000FFFFL;
+		v = (v | v << 8) & 0x00FF00FF00FF00FFL;
+		v = (v | v << 4) & 0x0F0F0F0F0F0F0F0FL;
+		v = (v | v << 2) & 0x3333333333333333L;
+		v = (v | v << 1) & 0x5555555555555555L;
+		return v;
+	}
+
+	//gathers the even bits of v
+	private static int deinterleave(long v) {
+		v &= 0x5555555555555555L;
+		v = (v | v >>> 1) & 0x3333333333333333L;
+		v = (v | v >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+		v = (v | v >>> 4) & 0x00FF00FF00FF00FFL;
+		v = (v | v >>> 8) & 0x0000FFFF0000FFFFL;
+		v = (v | v >>> 16) & 0x00000000FFFFFFFFL;
+		return (int) v;
+	}
+}
@@ -0,0 +1,253 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * Monthly range partitions of the location table on its timestamp, turned on with
+ * {@code location.partitioning=month}. Date filters compare the timestamp column with
+ * bound values, so the planner only reads the partitions of the months searched, and
+ * a month is dropped from the table by detaching its partition without touching rows.
+ *
+ * Partitions are created before the rows of a new month are written, outside the
+ * writing transaction: attaching only takes a SHARE UPDATE EXCLUSIVE lock on the
+ * table, which does not wait for running imports. Needs PostgreSQL 12 or later.
+ */
+public class PartitionManager {
+	private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'location_y'uuuu'm'MM");
+	//rows without timestamp, from before it was backfilled
+	private static final String UNDATED = "location_undated";
+
+	private static final Set<YearMonth> attached = ConcurrentHashMap.newKeySet();
+	private static volatile SessionFactory sessionFactory;
+
+	private PartitionManager() {
+	}
+
+	/**
+	 * Partitions the location table when asked to and it is not partitioned yet, in a
+	 * single transaction that copies every row, then reads the partitions there are.
+	 */
+	static void start(SessionFactory factory, boolean monthly) {
+		try (Session session = factory.openSession()) {
+			session.doWork(connection -> {
+				boolean partitioned = isPartitioned(connection);
+				if (!partitioned && monthly) {
+					partition(connection);
+					partitioned = true;
+				}
+				if (partitioned) {
+					attached.clear();
+					attached.addAll(readPartitions(connection));
+					sessionFactory = factory;
+				}
+			});
+		}
+	}
+
+	public static boolean isEnabled() {
+		return sessionFactory != null;
+	}
+
+	//whether every month from one UTC epoch second to the other has its partition
+	public static boolean covers(long fromEpochSecond, long toEpochSecond) {
+		if (!isEnabled())
+			return true;
+		for (YearMonth month : months(fromEpochSecond, toEpochSecond)) {
+			if (!attached.contains(month))
+				return false;
+		}
+		return true;
+	}
+
+	public static void ensure(long fromEpochSecond, long toEpochSecond) {
+		ensure(months(fromEpochSecond, toEpochSecond));
+	}
+
+	/**
+	 * Creates the partitions missing for the months. Must not be called while the
+	 * calling thread has rows waiting to be committed, other transactions only see the
+	 * new partitions once they start after it.
+	 */
+	public static synchronized void ensure(Collection<YearMonth> months) {
+		if (!isEnabled() || attached.containsAll(months))
+			return;
+		try (Session session = sessionFactory.openSession()) {
+			session.doWork(connection -> {
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(true);
+				try {
+					//another process may have created some since they were read
+					attached.addAll(readPartitions(connection));
+					for (YearMonth month : months) {
+						if (!attached.contains(month)) {
+							attach(connection, month);
+							attached.add(month);
+						}
+					}
+				} finally {
+					connection.setAutoCommit(autoCommit);
+				}
+			});
+		}
+	}
+
+	public static List<YearMonth> getPartitions() {
+		List<YearMonth> months = new ArrayList<YearMonth>(attached);
+		Collections.sort(months);
+		return months;
+	}
+
+	public static String tableName(YearMonth month) {
+		return month.format(NAME);
+	}
+
+	/**
+	 * Takes the month's partition out of the location table, which only changes the
+	 * catalog. The rows stay in the returned table, to be archived or dropped.
+	 */
+	public static synchronized String detach(YearMonth month) {
+		if (!isEnabled() || !attached.contains(month))
+			return null;
+		String table = tableName(month);
+		try (Session session = sessionFactory.openSession()) {
+			session.doWork(connection -> execute(connection, "ALTER TABLE location DETACH PARTITION " + table));
+		}
+		attached.remove(month);
+		return table;
+	}
+
+	private static void partition(Connection connection) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			System.out.println("Partitioning location by month");
+			execute(connection,
+				"ALTER TABLE location RENAME TO location_unpartitioned",
+				"CREATE TABLE location (LIKE location_unpartitioned INCLUDING DEFAULTS) PARTITION BY RANGE (timestamp)");
+			boolean undated;
+			try (Statement statement = connection.createStatement();
+					ResultSet result = statement.executeQuery("SELECT min(timestamp), max(timestamp), "
+							+ "count(*) FILTER (WHERE timestamp IS NULL) FROM location_unpartitioned")) {
+				result.next();
+				if (result.getTimestamp(1) != null) {
+					YearMonth last = YearMonth.from(result.getTimestamp(2).toLocalDateTime());
+					for (YearMonth month = YearMonth.from(result.getTimestamp(1).toLocalDateTime()); !month.isAfter(last); month = month.plusMonths(1))
+						execute(connection, "CREATE TABLE " + tableName(month) + " PARTITION OF location " + bounds(month));
+				}
+				undated = result.getLong(3) > 0;
+				//the CHECK tells attaching a month there is nothing of it here, so the rows are not scanned
+				if (undated)
+					execute(connection,
+						"CREATE TABLE " + UNDATED + " PARTITION OF location DEFAULT",
+						"ALTER TABLE " + UNDATED + " ADD CONSTRAINT " + UNDATED + "_null CHECK (timestamp IS NULL)");
+			}
+			//the old table's keys and indexes go with it, so their names are free again
+			execute(connection,
+				"INSERT INTO location SELECT * FROM location_unpartitioned",
+				"DROP TABLE location_unpartitioned",
+				primaryKey(undated),
+				"CREATE INDEX location_vehicle_timestamp_id_idx ON location (vehicle_id, timestamp, location_id)",
+				"CREATE INDEX location_timestamp_idx ON location (timestamp)",
+				"CREATE INDEX location_cell_idx ON location (cell)",
+				"ALTER TABLE location ADD CONSTRAINT location_vehicle_fk FOREIGN KEY (vehicle_id) REFERENCES vehicle (vehicle_id)");
+			connection.commit();
+			execute(connection, "ANALYZE location");
+		} catch (SQLException | RuntimeException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * A key of a partitioned table holds the partition column, so location_id is only
+	 * unique with the timestamp. Undated rows have none, a primary key refuses them: with
+	 * such rows the key is a unique constraint, which does not hold for them.
+	 */
+	private static String primaryKey(boolean undated) {
+		return "ALTER TABLE location ADD CONSTRAINT location_pkey " + (undated ? "UNIQUE" : "PRIMARY KEY") + " (location_id, timestamp)";
+	}
+
+	/**
+	 * The table is made apart with a CHECK of its bounds, so attaching it needs no scan
+	 * and no lock blocking the writers. The indexes and the foreign key of the location
+	 * table are added to it on attach.
+	 */
+	private static void attach(Connection connection, YearMonth month) throws SQLException {
+		String table = tableName(month);
+		execute(connection,
+			"CREATE TABLE IF NOT EXISTS " + table + " (LIKE location INCLUDING DEFAULTS)",
+			//left over when a previous attempt failed
+			"ALTER TABLE " + table + " DROP CONSTRAINT IF EXISTS " + table + "_bounds",
+			"ALTER TABLE " + table + " ADD CONSTRAINT " + table + "_bounds CHECK (timestamp IS NOT NULL AND timestamp >= '"
+					+ start(month) + "' AND timestamp < '" + start(month.plusMonths(1)) + "')",
+			"ALTER TABLE location ATTACH PARTITION " + table + " " + bounds(month),
+			"ALTER TABLE " + table + " DROP CONSTRAINT " + table + "_bounds");
+	}
+
+	private static String bounds(YearMonth month) {
+		return "FOR VALUES FROM ('" + start(month) + "') TO ('" + start(month.plusMonths(1)) + "')";
+	}
+
+	private static String start(YearMonth month) {
+		return month.atDay(1).atStartOfDay().toString().replace('T', ' ');
+	}
+
+	private static Set<YearMonth> months(long fromEpochSecond, long toEpochSecond) {
+		Set<YearMonth> months = new TreeSet<YearMonth>();
+		YearMonth last = YearMonth.from(LocalDateTime.ofInstant(Instant.ofEpochSecond(toEpochSecond), ZoneOffset.UTC));
+		for (YearMonth month = YearMonth.from(LocalDateTime.ofInstant(Instant.ofEpochSecond(fromEpochSecond), ZoneOffset.UTC)); !month.isAfter(last); month = month.plusMonths(1))
+			months.add(month);
+		return months;
+	}
+
+	private static boolean isPartitioned(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("SELECT relkind FROM pg_class WHERE oid = to_regclass('location')")) {
+			return result.next() && "p".equals(result.getString(1));
+		}
+	}
+
+	private static Set<YearMonth> readPartitions(Connection connection) throws SQLException {
+		Set<YearMonth> months = new TreeSet<YearMonth>();
+		try (Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+						+ "WHERE i.inhparent = to_regclass('location')")) {
+			while (result.next()) {
+				try {
+					months.add(YearMonth.parse(result.getString(1), NAME));
+				} catch (DateTimeParseException e) {
+					//the undated partition
+				}
+			}
+		}
+		return months;
+	}
+
+	private static void execute(Connection connection, String... sql) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			for (String s : sql)
+				statement.execute(s);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Database settings read from {@code tracker.properties}: the file named by the
+ * {@code tracker.config} system property, else the one in the working directory, else
+ * the one on the classpath. See {@code tracker.properties.example} for the keys.
+ * Keys starting with {@code hibernate.} are passed to Hibernate as they are, keys
+ * starting with {@code jdbc.} to the driver without the prefix.
+ */
+public class PersistenceConfig {
+	public static final String FILE_NAME = "tracker.properties";
+	public static final String LOCATION_PROPERTY = "tracker.config";
+
+	private final Properties properties;
+	private final String source;
+
+	public PersistenceConfig(Properties properties, String source) {
+		this.properties = properties;
+		this.source = source;
+		require("db.url");
+		require("db.user");
+		if (!getPartitioning().equals("none") && !getPartitioning().equals("month"))
+			throw new IllegalStateException(source + ": location.partitioning must be none or month");
+		if (getMinSize() < 0 || getMaxSize() < 1 || getMinSize() > getMaxSize())
+			throw new IllegalStateException(source + ": pool.minSize and pool.maxSize must satisfy 0 <= min <= max, max >= 1");
+	}
+
+	/**
+	 * @throws IllegalStateException if no file is found or a required key is missing
+	 */
+	public static PersistenceConfig load() {
+		String location = System.getProperty(LOCATION_PROPERTY);
+		File file = new File(location != null ? location : FILE_NAME);
+		try {
+			if (file.isFile()) {
+				try (InputStream in = new FileInputStream(file)) {
+					return load(in, file.getAbsolutePath());
+				}
+			}
+			if (location != null)
+				throw new IllegalStateException(location + " given by -D" + LOCATION_PROPERTY + " does not exist");
+			try (InputStream in = PersistenceConfig.class.getResourceAsStream("/" + FILE_NAME)) {
+				if (in != null)
+					return load(in, "classpath:" + FILE_NAME);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+		}
+		throw new IllegalStateException("No " + FILE_NAME + " found in " + new File("").getAbsolutePath()
+				+ " or on the classpath; copy " + FILE_NAME + ".example and set the database URL and credentials");
+	}
+
+	private static PersistenceConfig load(InputStream in, String source) throws IOException {
+		Properties properties = new Properties();
+		properties.load(in);
+		return new PersistenceConfig(properties, source);
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getUrl() {
+		return properties.getProperty("db.url");
+	}
+
+	/**
+	 * Credentials, the prepared statement cache size and every {@code jdbc.} key.
+	 */
+	public Properties getDriverProperties() {
+		Properties driver = new Properties();
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith("jdbc."))
+				driver.setProperty(key.substring("jdbc.".length()), properties.getProperty(key));
+		}
+		driver.setProperty("user", properties.getProperty("db.user"));
+		driver.setProperty("password", properties.getProperty("db.password", ""));
+		//per connection cache of server-side prepared statements
+		driver.setProperty("preparedStatementCacheQueries", String.valueOf(getInt("pool.statementCacheSize", 256)));
+		return driver;
+	}
+
+	public Properties getHibernateProperties() {
+		Properties hibernate = new Properties();
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith("hibernate."))
+				hibernate.setProperty(key, properties.getProperty(key));
+		}
+		return hibernate;
+	}
+
+	//none or month, see PartitionManager
+	public String getPartitioning() {
+		return properties.getProperty("location.partitioning", "none").trim();
+	}
+
+	public int getMinSize() {
+		return getInt("pool.minSize", 2);
+	}
+
+	public int getMaxSize() {
+		return getInt("pool.maxSize", 10);
+	}
+
+	public long getConnectionTimeoutMillis() {
+		return getLong("pool.connectionTimeoutMs", 30000);
+	}
+
+	public long getIdleTimeoutMillis() {
+		return getLong("pool.idleTimeoutMs", 600000);
+	}
+
+	public long getMaxLifetimeMillis() {
+		return getLong("pool.maxLifetimeMs", 1800000);
+	}
+
+	//0 disables leak detection
+	public long getLeakDetectionThresholdMillis() {
+		return getLong("pool.leakDetectionThresholdMs", 0);
+	}
+
+	private void require(String key) {
+		String value = properties.getProperty(key);
+		if (value == null || value.trim().isEmpty())
+			throw new IllegalStateException(source + ": missing " + key);
+	}
+
+	private int getInt(String key, int defaultValue) {
+		return (int) getLong(key, defaultValue);
+	}
+
+	private long getLong(String key, long defaultValue) {
+		String value = properties.getProperty(key);
+		if (value == null || value.trim().isEmpty())
+			return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalStateException(source + ": " + key + " is not a number: " + value);
+		}
+	}
+}
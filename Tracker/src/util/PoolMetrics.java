@@ -0,0 +1,70 @@
+package util;
+
+/**
+ * Snapshot of the connection pool counters.
+ */
+public class PoolMetrics {
+	private final int active;
+	private final int idle;
+	private final int waiting;
+	private final long borrows;
+	private final long timeouts;
+	private final long leaks;
+	private final long totalWaitNanos;
+	private final long maxWaitNanos;
+
+	PoolMetrics(int active, int idle, int waiting, long borrows, long timeouts, long leaks, long totalWaitNanos, long maxWaitNanos) {
+		this.active = active;
+		this.idle = idle;
+		this.waiting = waiting;
+		this.borrows = borrows;
+		this.timeouts = timeouts;
+		this.leaks = leaks;
+		this.totalWaitNanos = totalWaitNanos;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public int getIdle() {
+		return idle;
+	}
+
+	public int getTotal() {
+		return active + idle;
+	}
+
+	//threads waiting for a connection
+	public int getWaiting() {
+		return waiting;
+	}
+
+	public long getBorrows() {
+		return borrows;
+	}
+
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	//connections held longer than the leak detection threshold
+	public long getLeaks() {
+		return leaks;
+	}
+
+	public double getAverageWaitMillis() {
+		return borrows == 0 ? 0 : totalWaitNanos / 1e6 / borrows;
+	}
+
+	public double getMaxWaitMillis() {
+		return maxWaitNanos / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("active %d, idle %d, waiting %d, borrows %d, wait avg %.2f ms max %.2f ms, timeouts %d, leaks %d",
+				active, idle, waiting, borrows, getAverageWaitMillis(), getMaxWaitMillis(), timeouts, leaks);
+	}
+}
@@ -0,0 +1,238 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * Versioned schema changes that hbm2ddl cannot make: backfills and indexes. Every step
+ * runs once, the applied versions are recorded in schema_version.
+ */
+public class SchemaMigration {
+	//rows per transaction while backfilling
+	private static final int BACKFILL_CHUNK = 50000;
+	//the last id of the chunk after an id, off the primary key; null past the last row
+	private static final String CHUNK_END = "SELECT max(location_id) FROM (SELECT location_id FROM location "
+			+ "WHERE location_id > ? ORDER BY location_id LIMIT " + BACKFILL_CHUNK + ") c";
+
+	private static final Migration[] MIGRATIONS = {
+		new Migration(1, "backfill location.timestamp", SchemaMigration::backfillTimestamp),
+		//the plate indexes are skipped on databases created without location.plate, see migration 5
+		new Migration(2, "index location by plate and timestamp", connection -> {
+			if (hasColumn(connection, "location", "plate"))
+				execute(connection, "CREATE INDEX IF NOT EXISTS location_plate_timestamp_idx ON location (plate, timestamp)");
+			execute(connection,
+				"CREATE INDEX IF NOT EXISTS location_timestamp_idx ON location (timestamp)",
+				"ANALYZE location");
+		}),
+		//the id breaks timestamp ties, so keyset pages and time order come straight off the index
+		new Migration(3, "index location by plate, timestamp and id", connection -> {
+			if (hasColumn(connection, "location", "plate"))
+				execute(connection,
+					"CREATE INDEX IF NOT EXISTS location_plate_timestamp_id_idx ON location (plate, timestamp, location_id)",
+					"DROP INDEX IF EXISTS location_plate_timestamp_idx");
+		}),
+		new Migration(4, "backfill and index location.cell", connection -> {
+			backfillCell(connection);
+			execute(connection, "CREATE INDEX IF NOT EXISTS location_cell_idx ON location (cell)", "ANALYZE location");
+		}),
+		new Migration(5, "move plates to the vehicle table", SchemaMigration::normalizeVehicles),
+		//counted again from scratch when rerun, the imports keep it up to date from here on
+		new Migration(6, "count locations by map tile", connection -> execute(connection,
+			"CREATE TABLE IF NOT EXISTS tile_count (vehicle_id integer NOT NULL REFERENCES vehicle (vehicle_id), "
+					+ "zoom smallint NOT NULL, tile_x integer NOT NULL, tile_y integer NOT NULL, points bigint NOT NULL, "
+					+ "PRIMARY KEY (vehicle_id, zoom, tile_x, tile_y))",
+			"TRUNCATE tile_count",
+			"INSERT INTO tile_count (vehicle_id, zoom, tile_x, tile_y, points) " + TileGrid.countSql("location"),
+			"CREATE INDEX IF NOT EXISTS tile_count_zoom_idx ON tile_count (zoom, tile_x, tile_y)",
+			"ANALYZE tile_count")),
+		//ids were taken from hibernate_sequence before location_seq, which starts at 1
+		new Migration(7, "move location_seq past the existing ids", connection -> execute(connection,
+			"SELECT setval('location_seq', (SELECT coalesce(max(location_id), 0) + 1 FROM location))")),
+		//COPY leaves the id to the server, set here once since it locks the whole table
+		new Migration(8, "take location ids from location_seq by default", connection -> execute(connection,
+			"ALTER TABLE location ALTER COLUMN location_id SET DEFAULT nextval('location_seq')")),
+		//what retention subtracts when it detaches a month, the imports keep it up to date from here on
+		new Migration(9, "count locations by month and map tile", connection -> execute(connection,
+			"CREATE TABLE IF NOT EXISTS month_tile_count (month date NOT NULL, vehicle_id integer NOT NULL REFERENCES vehicle (vehicle_id), "
+					+ "tile_x integer NOT NULL, tile_y integer NOT NULL, points bigint NOT NULL, "
+					+ "PRIMARY KEY (month, vehicle_id, tile_x, tile_y))",
+			"TRUNCATE month_tile_count",
+			"INSERT INTO month_tile_count (month, vehicle_id, tile_x, tile_y, points) " + TileGrid.monthCountSql("location"),
+			"ANALYZE month_tile_count"))
+	};
+
+	private SchemaMigration() {
+	}
+
+	public static void migrate(SessionFactory sessionFactory) {
+		try (Session session = sessionFactory.openSession()) {
+			session.doWork(connection -> {
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(true);
+				try {
+					execute(connection, "CREATE TABLE IF NOT EXISTS schema_version (version integer PRIMARY KEY, "
+							+ "description varchar(255), applied_at timestamp DEFAULT now())");
+					Set<Integer> applied = applied(connection);
+					for (Migration migration : MIGRATIONS) {
+						if (applied.contains(migration.version))
+							continue;
+						System.out.println("Schema migration " + migration.version + ": " + migration.description);
+						migration.step.apply(connection);
+						execute(connection, "INSERT INTO schema_version (version, description) VALUES ("
+								+ migration.version + ", '" + migration.description + "')");
+					}
+				} finally {
+					connection.setAutoCommit(autoCommit);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Chunked so a large table is not rewritten in one transaction. The chunks are ranges
+	 * of ids walked in order, each read once, where looking for the rows left to do would
+	 * scan again the rows already done; a rerun skips the done rows.
+	 */
+	private static void backfillTimestamp(Connection connection) throws SQLException {
+		execute(connection, "ALTER TABLE location ADD COLUMN IF NOT EXISTS timestamp timestamp");
+		try (PreparedStatement next = connection.prepareStatement(CHUNK_END);
+				PreparedStatement update = connection.prepareStatement("UPDATE location SET timestamp = date + time "
+						+ "WHERE location_id > ? AND location_id <= ? AND timestamp IS NULL AND date IS NOT NULL AND time IS NOT NULL")) {
+			long total = 0;
+			for (Long last = Long.MIN_VALUE, end; (end = chunkEnd(next, last)) != null; last = end) {
+				update.setLong(1, last);
+				update.setLong(2, end);
+				total += update.executeUpdate();
+			}
+			System.out.println("Backfilled " + total + " timestamps");
+		}
+	}
+
+	//the cell is computed here, the database has no Z-order function; chunks walk the ids as backfillTimestamp
+	private static void backfillCell(Connection connection) throws SQLException {
+		execute(connection, "ALTER TABLE location ADD COLUMN IF NOT EXISTS cell bigint");
+		try (PreparedStatement select = connection.prepareStatement("SELECT location_id, latitude, longitude FROM location "
+						+ "WHERE location_id > ? AND cell IS NULL AND latitude IS NOT NULL AND longitude IS NOT NULL "
+						+ "ORDER BY location_id LIMIT " + BACKFILL_CHUNK);
+				PreparedStatement update = connection.prepareStatement("UPDATE location SET cell = ? WHERE location_id = ?")) {
+			//one transaction per chunk
+			connection.setAutoCommit(false);
+			long total = 0;
+			long last = Long.MIN_VALUE;
+			int rows;
+			do {
+				rows = 0;
+				select.setLong(1, last);
+				try (ResultSet result = select.executeQuery()) {
+					while (result.next()) {
+						last = result.getLong(1);
+						update.setLong(1, MortonCode.of(result.getDouble(2), result.getDouble(3)));
+						update.setLong(2, last);
+						update.addBatch();
+						++rows;
+					}
+				}
+				if (rows > 0)
+					update.executeBatch();
+				connection.commit();
+				total += rows;
+			} while (rows > 0);
+			System.out.println("Backfilled " + total + " cells");
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Gives every plate a vehicle row, points the locations at it and drops the plate
+	 * column, then computes the vehicle summaries the imports keep up to date from here on.
+	 */
+	private static void normalizeVehicles(Connection connection) throws SQLException {
+		execute(connection,
+			"ALTER TABLE location ADD COLUMN IF NOT EXISTS vehicle_id integer",
+			"CREATE UNIQUE INDEX IF NOT EXISTS vehicle_plate_idx ON vehicle (plate)");
+		if (hasColumn(connection, "location", "plate")) {
+			execute(connection, "INSERT INTO vehicle (vehicle_id, plate, point_count) "
+					+ "SELECT nextval('vehicle_seq'), plate, 0 FROM (SELECT DISTINCT plate FROM location WHERE plate IS NOT NULL) p "
+					+ "ON CONFLICT (plate) DO NOTHING");
+			//in id ranges as backfillTimestamp
+			try (PreparedStatement next = connection.prepareStatement(CHUNK_END);
+					PreparedStatement update = connection.prepareStatement("UPDATE location l SET vehicle_id = v.vehicle_id FROM vehicle v "
+							+ "WHERE v.plate = l.plate AND l.location_id > ? AND l.location_id <= ? AND l.vehicle_id IS NULL")) {
+				long total = 0;
+				for (Long last = Long.MIN_VALUE, end; (end = chunkEnd(next, last)) != null; last = end) {
+					update.setLong(1, last);
+					update.setLong(2, end);
+					total += update.executeUpdate();
+				}
+				System.out.println("Linked " + total + " locations to their vehicle");
+			}
+			execute(connection, "ALTER TABLE location DROP COLUMN plate");
+		}
+		execute(connection,
+			"UPDATE vehicle v SET point_count = s.points, first_seen = s.first_seen, last_seen = s.last_seen, "
+					+ "south = s.south, west = s.west, north = s.north, east = s.east "
+					+ "FROM (SELECT vehicle_id, count(*) AS points, min(timestamp) AS first_seen, max(timestamp) AS last_seen, "
+					+ "min(latitude) AS south, min(longitude) AS west, max(latitude) AS north, max(longitude) AS east "
+					+ "FROM location GROUP BY vehicle_id) s WHERE v.vehicle_id = s.vehicle_id",
+			"ALTER TABLE location ADD CONSTRAINT location_vehicle_fk FOREIGN KEY (vehicle_id) REFERENCES vehicle (vehicle_id)",
+			"CREATE INDEX IF NOT EXISTS location_vehicle_timestamp_id_idx ON location (vehicle_id, timestamp, location_id)",
+			"ANALYZE location");
+	}
+
+	private static Long chunkEnd(PreparedStatement next, long last) throws SQLException {
+		next.setLong(1, last);
+		try (ResultSet result = next.executeQuery()) {
+			result.next();
+			long end = result.getLong(1);
+			return result.wasNull() ? null : end;
+		}
+	}
+
+	private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+		try (ResultSet result = connection.getMetaData().getColumns(null, null, table, column)) {
+			return result.next();
+		}
+	}
+
+	private static Set<Integer> applied(Connection connection) throws SQLException {
+		Set<Integer> versions = new HashSet<Integer>();
+		try (Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("SELECT version FROM schema_version")) {
+			while (result.next())
+				versions.add(result.getInt(1));
+		}
+		return versions;
+	}
+
+	private static void execute(Connection connection, String... sql) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			for (String s : sql)
+				statement.execute(s);
+		}
+	}
+
+	private interface Step {
+		void apply(Connection connection) throws SQLException;
+	}
+
+	private static class Migration {
+		private final int version;
+		private final String description;
+		private final Step step;
+
+		private Migration(int version, String description, Step step) {
+			this.version = version;
+			this.description = description;
+			this.step = step;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package util;
+
+import org.openstreetmap.gui.jmapviewer.OsmMercator;
+
+/**
+ * Map tiles of the zooms 0 to {@link #MAX_ZOOM}, numbered as the tile servers do through
+ * {@link OsmMercator}. A point is located once at the deepest zoom, the tile holding it at
+ * a lower zoom is found by shifting its numbers.
+ */
+public class TileGrid {
+	public static final int MAX_ZOOM = 18;
+	private static final int TILES = 1 << MAX_ZOOM;
+
+	private TileGrid() {
+	}
+
+	//the tile of the point at MAX_ZOOM, x in the high bits
+	public static long of(double lat, double lon) {
+		OsmMercator mercator = OsmMercator.MERCATOR_256;
+		long x = clamp(mercator.lonToX(lon, MAX_ZOOM) / OsmMercator.DEFAUL_TILE_SIZE);
+		long y = clamp(mercator.latToY(lat, MAX_ZOOM) / OsmMercator.DEFAUL_TILE_SIZE);
+		return tile(x, y);
+	}
+
+	//the numbers of a tile in one long, at any zoom
+	public static long tile(long x, long y) {
+		return x << MAX_ZOOM | y;
+	}
+
+	public static int x(long tile) {
+		return (int) (tile >>> MAX_ZOOM);
+	}
+
+	public static int y(long tile) {
+		return (int) (tile & (TILES - 1));
+	}
+
+	/**
+	 * SQL counting the points of a table holding locations by
+	 * (vehicle_id, zoom, tile_x, tile_y) for every zoom, the same tiles {@link #of} gives.
+	 */
+	public static String countSql(String table) {
+		return rollupSql("SELECT vehicle_id, x, y, count(*) AS points FROM (" + locatedSql(table, "", "") + ") p GROUP BY vehicle_id, x, y");
+	}
+
+	/**
+	 * SQL counting the dated points of a table holding locations by
+	 * (month, vehicle_id, tile_x, tile_y) at {@link #MAX_ZOOM}, the month being the first
+	 * day of the month of their timestamp.
+	 */
+	public static String monthCountSql(String table) {
+		return "SELECT date_trunc('month', timestamp)::date AS month, vehicle_id, x AS tile_x, y AS tile_y, count(*) AS points FROM ("
+				+ locatedSql(table, ", timestamp", " AND timestamp IS NOT NULL") + ") p GROUP BY 1, vehicle_id, x, y";
+	}
+
+	/**
+	 * SQL rolling counts by (vehicle_id, x, y, points) at {@link #MAX_ZOOM} up to
+	 * (vehicle_id, zoom, tile_x, tile_y, points) for every zoom.
+	 */
+	public static String rollupSql(String counts) {
+		return "SELECT t.vehicle_id, z.zoom, t.x >> (" + MAX_ZOOM + " - z.zoom) AS tile_x, t.y >> (" + MAX_ZOOM + " - z.zoom) AS tile_y, "
+				+ "sum(t.points) AS points FROM (" + counts + ") t CROSS JOIN generate_series(0, " + MAX_ZOOM + ") AS z(zoom) "
+				+ "GROUP BY t.vehicle_id, z.zoom, t.x >> (" + MAX_ZOOM + " - z.zoom), t.y >> (" + MAX_ZOOM + " - z.zoom)";
+	}
+
+	//the vehicle, the columns and the tile at MAX_ZOOM of each located row
+	private static String locatedSql(String table, String columns, String where) {
+		return "SELECT vehicle_id" + columns + ", "
+				+ "LEAST(" + (TILES - 1) + ", GREATEST(0, floor((longitude + 180) / 360 * " + TILES + ")))::int AS x, "
+				+ "LEAST(" + (TILES - 1) + ", GREATEST(0, floor((0.5 - ln((1 + sin(radians(lat))) / (1 - sin(radians(lat)))) / (4 * pi())) * " + TILES + ")))::int AS y "
+				+ "FROM (SELECT vehicle_id" + columns + ", longitude, LEAST(" + OsmMercator.MAX_LAT + ", GREATEST(" + OsmMercator.MIN_LAT + ", latitude)) AS lat "
+				+ "FROM " + table + " WHERE vehicle_id IS NOT NULL AND latitude IS NOT NULL AND longitude IS NOT NULL" + where + ") c";
+	}
+
+	private static long clamp(double tile) {
+		return (long) Math.max(0, Math.min(TILES - 1, Math.floor(tile)));
+	}
+}
@@ -7,6 +7,7 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.JButton;
@@ -21,13 +22,17 @@ import org.openstreetmap.gui.jmapviewer.Layer;
 import org.openstreetmap.gui.jmapviewer.MapMarkerDot;
 import org.openstreetmap.gui.jmapviewer.OsmTileLoader;
 import org.openstreetmap.gui.jmapviewer.events.JMVCommandEvent;
+import org.openstreetmap.gui.jmapviewer.interfaces.ICoordinate;
 import org.openstreetmap.gui.jmapviewer.interfaces.JMapViewerEventListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.MapMarker;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileLoader;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
 import org.openstreetmap.gui.jmapviewer.tilesources.BingAerialTileSource;
 import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
 
+import model.dto.BoundingBox;
 import model.dto.Coordinate;
+import model.dto.TrajectoryBuffer;
 
 public class MapPanel extends JPanel implements JMapViewerEventListener {
 
@@ -73,7 +78,7 @@ public class MapPanel extends JPanel implements JMapViewerEventListener {
                 + "left double click or mouse wheel to zoom.");
         helpPanel.add(helpLabel);
         JButton button = new JButton("setDisplayToFitMapMarkers");
-        button.addActionListener(e -> map().setDisplayToFitMapMarkers());
+        button.addActionListener(e -> fitMapMarkers());
         
         JComboBox<TileSource> tileSourceSelector = new JComboBox<>(new TileSource[] {
                 new OsmTileSource.Mapnik(),
@@ -173,10 +178,73 @@ public class MapPanel extends JPanel implements JMapViewerEventListener {
         }
     }
     
+    //the area shown at the current position and zoom
+    public BoundingBox getVisibleArea() {
+        ICoordinate northWest = map().getPosition(0, 0);
+        ICoordinate southEast = map().getPosition(map().getWidth(), map().getHeight());
+        double west = northWest.getLon();
+        double east = southEast.getLon();
+        //zoomed out the map repeats sideways
+        if (east - west >= 360) {
+            west = -180;
+            east = 180;
+        }
+        return new BoundingBox(southEast.getLat(), wrap(west), northWest.getLat(), wrap(east));
+    }
+    
+    //points worth drawing for a trajectory, two a pixel across the map
+    public int getPointBudget() {
+        return Math.max(3, 2 * Math.max(map().getWidth(), map().getHeight()));
+    }
+    
+    public double getMeterPerPixel() {
+        return map().getMeterPerPixel();
+    }
+    
+    private static double wrap(double lon) {
+        return lon > 180 ? lon - 360 : lon < -180 ? lon + 360 : lon;
+    }
+    
     public void showTrajectory(List<Coordinate> trajectory, String name) {
     	Layer trajectoryLayer = treeMap.addLayer(name);
     	for(Coordinate coordinate : trajectory)
     		map().addMapMarker(new MapMarkerDot(trajectoryLayer, coordinate));
     	
     }
-}
\ No newline at end of file
+    
+    //one marker a vehicle, see TrajectoryMarker
+    public void showTrajectories(List<TrajectoryBuffer> trajectories, String name) {
+        Layer trajectoryLayer = treeMap.addLayer(name);
+        for (TrajectoryBuffer trajectory : trajectories)
+            if (trajectory.size() > 0)
+                map().addMapMarker(new TrajectoryMarker(trajectoryLayer, map(), trajectory));
+    }
+    
+    //as setDisplayToFitMapMarkers, but it only knows the middle of a trajectory
+    private void fitMapMarkers() {
+        double south = 90, west = 180, north = -90, east = -180;
+        List<MapMarker> markers = new ArrayList<MapMarker>(map().getMapMarkerList());
+        for (MapMarker marker : markers) {
+            if (!marker.isVisible())
+                continue;
+            BoundingBox bounds = marker instanceof TrajectoryMarker ? ((TrajectoryMarker) marker).getBounds()
+                    : new BoundingBox(marker.getLat(), marker.getLon(), marker.getLat(), marker.getLon());
+            south = Math.min(south, bounds.getSouth());
+            west = Math.min(west, bounds.getWest());
+            north = Math.max(north, bounds.getNorth());
+            east = Math.max(east, bounds.getEast());
+        }
+        if (south > north)
+            return;
+        TileSource source = map().getTileController().getTileSource();
+        int zoom = source.getMaxZoom();
+        Point northWest = source.latLonToXY(north, west, zoom);
+        Point southEast = source.latLonToXY(south, east, zoom);
+        while (zoom > source.getMinZoom() && (southEast.x - northWest.x > map().getWidth() || southEast.y - northWest.y > map().getHeight())) {
+            --zoom;
+            northWest = source.latLonToXY(north, west, zoom);
+            southEast = source.latLonToXY(south, east, zoom);
+        }
+        map().setDisplayPosition(source.xyToLatLon((northWest.x + southEast.x) / 2, (northWest.y + southEast.y) / 2, zoom), zoom);
+    }
+}
@@ -6,13 +6,23 @@ import javax.swing.JFrame;
 import javax.swing.GroupLayout;
 import javax.swing.GroupLayout.Alignment;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 import javax.swing.LayoutStyle.ComponentPlacement;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import controller.FileController;
 import controller.TrajectoryController;
-import model.dto.Coordinate;
+import format.TrackFormats;
+import ingest.ThinningOptions;
+import model.dto.BoundingBox;
+import model.dto.ImportProgress;
+import model.dto.ImportReport;
+import model.dto.ThinningStatistics;
+import model.dto.TrajectoryBuffer;
+import service.ImportJob;
+import service.ImportListener;
 
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -24,11 +34,17 @@ import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.awt.event.ActionEvent;
 import javax.swing.JLabel;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JTextField;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.UIManager;
 import java.awt.Color;
@@ -41,6 +57,10 @@ public class SwingGui {
 	private JTextField textField;
 	private JTextField yearFrom;
 	private JTextField yearTo;
+	private int runningImports;
+	//the queries of the last search, cancelled when another one starts
+	private CompletableFuture<List<TrajectoryBuffer>> search;
+	private CompletableFuture<Map<String,String>> coincidence;
 	
 	/**
 	 * Launch the application.
@@ -235,6 +255,8 @@ public class SwingGui {
 		});
 		
 
+		JCheckBox chckbxVisibleArea = new JCheckBox("Visible area only");
+		
 		JButton btnSearch = new JButton("Search");
 		btnSearch.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
@@ -247,16 +269,27 @@ public class SwingGui {
 					dateTo = new String(yearTo.getText() + '-' + monthTo.getSelectedItem() + '-' + dayTo.getSelectedItem());
 				if (chckbxPlate.isSelected())
 					plate = (String) comboBoxPlate.getSelectedItem();
-				List<Coordinate> trajectory = trajectoryController.getTrajectory(dateFrom, dateTo, plate);
-				map.showTrajectory(trajectory, "Search");
-				
+				BoundingBox area = chckbxVisibleArea.isSelected() ? map.getVisibleArea() : null;
+				cancelSearch();
 				coincidenceBox.removeAllItems();
-				Map<String,String> coincidences = trajectoryController.getCoincidence(trajectory);
-				for (Map.Entry<String, String> pair : coincidences.entrySet()) {
-					coincidenceBox.addItem(pair);
-		        }
-				coincidenceBox.setEnabled(true);
-				
+				CompletableFuture<List<TrajectoryBuffer>> trajectorySearch = trajectoryController.getTrajectoriesAsync(dateFrom, dateTo, plate, area);
+				search = trajectorySearch;
+				//the queries run in the background, the results are shown on the EDT
+				trajectorySearch.whenComplete((trajectories, failure) -> SwingUtilities.invokeLater(() -> {
+					if (search != trajectorySearch || report(failure))
+						return;
+					map.showTrajectories(trajectories, "Search");
+					CompletableFuture<Map<String,String>> coincidenceSearch = trajectoryController.getCoincidenceAsync(trajectories);
+					coincidence = coincidenceSearch;
+					coincidenceSearch.whenComplete((coincidences, error) -> SwingUtilities.invokeLater(() -> {
+						if (coincidence != coincidenceSearch || report(error))
+							return;
+						for (Map.Entry<String, String> pair : coincidences.entrySet()) {
+							coincidenceBox.addItem(pair);
+						}
+						coincidenceBox.setEnabled(true);
+					}));
+				}));
 			}
 		});
 		
@@ -265,8 +298,12 @@ public class SwingGui {
 			public void actionPerformed(ActionEvent arg0) {
 				@SuppressWarnings("unchecked")
 				Entry<String, String> entry = (Entry<String, String>) coincidenceBox.getSelectedItem();
-				List<Coordinate> trajectory = trajectoryController.getTrajectory(null, null, entry.getKey());
-				map.showTrajectory(trajectory, entry.getKey());
+				//only shown, a decimated trajectory draws the same
+				trajectoryController.getTrajectoriesAsync(null, null, entry.getKey(), null, map.getPointBudget(), map.getMeterPerPixel())
+						.whenComplete((trajectories, failure) -> SwingUtilities.invokeLater(() -> {
+							if (!report(failure))
+								map.showTrajectories(trajectories, entry.getKey());
+						}));
 			}
 		});
 		
@@ -277,6 +314,7 @@ public class SwingGui {
 					.addContainerGap()
 					.addGroup(gl_panel.createParallelGroup(Alignment.LEADING)
 						.addComponent(chckbxPlate)
+						.addComponent(chckbxVisibleArea)
 						.addGroup(gl_panel.createSequentialGroup()
 							.addGroup(gl_panel.createParallelGroup(Alignment.LEADING)
 								.addComponent(lblMonth)
@@ -337,6 +375,8 @@ public class SwingGui {
 					.addComponent(chckbxPlate)
 					.addPreferredGap(ComponentPlacement.RELATED)
 					.addComponent(comboBoxPlate, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+					.addPreferredGap(ComponentPlacement.UNRELATED)
+					.addComponent(chckbxVisibleArea)
 					.addPreferredGap(ComponentPlacement.RELATED)
 					.addComponent(btnSearch)
 					.addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
@@ -348,8 +388,11 @@ public class SwingGui {
 		btnOpenFile.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				//filter by extension
-				FileNameExtensionFilter filter = new FileNameExtensionFilter("PLT files", "plt");
+				FileNameExtensionFilter filter = new FileNameExtensionFilter("Track files", TrackFormats.getExtensions().toArray(new String[0]));
 				chooser.setFileFilter(filter);
+				//a folder imports the whole dataset tree below it
+				chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+				chooser.setMultiSelectionEnabled(true);
 				//open in project path
 				File workingDirectory = new File(System.getProperty("user.dir"));
 				chooser.setCurrentDirectory(workingDirectory);
@@ -367,16 +410,101 @@ public class SwingGui {
 		textField = new JTextField();
 		textField.setColumns(5);
 		
+		JCheckBox chckbxCopy = new JCheckBox("Fast import (COPY)");
+		chckbxCopy.addItemListener(new ItemListener() {
+		    @Override
+		    public void itemStateChanged(ItemEvent e) {
+		    	fileController.setCopyLoader(e.getStateChange() == ItemEvent.SELECTED);
+		    }
+		});
+		
+		//drops repeated fixes and points too close to the last kept one, keeps the shape within the tolerance; 0 turns a rule off
+		JCheckBox chckbxThin = new JCheckBox("Thin points");
+		JLabel lblMinDistance = new JLabel("Min. distance (m)");
+		JSpinner spinnerMinDistance = new JSpinner(new SpinnerNumberModel(5.0, 0.0, 10000.0, 1.0));
+		JLabel lblMinInterval = new JLabel("Min. interval (s)");
+		JSpinner spinnerMinInterval = new JSpinner(new SpinnerNumberModel(0, 0, 86400, 1));
+		JLabel lblTolerance = new JLabel("Tolerance (m)");
+		JSpinner spinnerTolerance = new JSpinner(new SpinnerNumberModel(5.0, 0.0, 10000.0, 1.0));
+		JSpinner[] thinningSpinners = {spinnerMinDistance, spinnerMinInterval, spinnerTolerance};
+		ChangeListener thinningChanged = new ChangeListener() {
+		    @Override
+		    public void stateChanged(ChangeEvent e) {
+		    	for (JSpinner spinner : thinningSpinners)
+		    		spinner.setEnabled(chckbxThin.isSelected());
+		    	if (chckbxThin.isSelected())
+		    		fileController.setThinning(new ThinningOptions(true, ((Number) spinnerMinDistance.getValue()).doubleValue(),
+		    				((Number) spinnerMinInterval.getValue()).longValue(), ((Number) spinnerTolerance.getValue()).doubleValue()));
+		    	else
+		    		fileController.setThinning(ThinningOptions.NONE);
+		    }
+		};
+		//a check box also changes state on rollover, only selection matters
+		chckbxThin.addItemListener(e -> thinningChanged.stateChanged(null));
+		for (JSpinner spinner : thinningSpinners) {
+			spinner.setEnabled(false);
+			spinner.addChangeListener(thinningChanged);
+		}
+		
+		JLabel lblImportStatus = new JLabel(" ");
+		
+		JProgressBar importProgress = new JProgressBar();
+		importProgress.setVisible(false);
+		
+		//runs on the import thread, everything is handed over to the EDT
+		ImportListener importListener = new ImportListener() {
+			@Override
+			public void progress(ImportProgress progress) {
+				SwingUtilities.invokeLater(() -> lblImportStatus.setText(progress.toString()));
+			}
+
+			@Override
+			public void fileFailed(File file, Exception cause) {
+				SwingUtilities.invokeLater(() -> lblImportStatus.setText("Could not import " + file.getName() + ": " + cause.getMessage()));
+			}
+
+			@Override
+			public void fileThinned(File file, ThinningStatistics statistics) {
+				SwingUtilities.invokeLater(() -> lblImportStatus.setText(file.getName() + ": " + statistics));
+			}
+
+			@Override
+			public void finished(ImportJob job, ImportReport report) {
+				SwingUtilities.invokeLater(() -> {
+					lblImportStatus.setText(report.toString());
+					//only the plates touched by the job can be new
+					for (String plate : job.getPlates())
+						if (((DefaultComboBoxModel<String>) comboBoxPlate.getModel()).getIndexOf(plate) < 0)
+							comboBoxPlate.addItem(plate);
+					if (--runningImports == 0)
+						importProgress.setVisible(false);
+				});
+			}
+		};
+		
 		JButton btnImport = new JButton("Import");
 		btnImport.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent arg0) {
-				
-				fileController.importData(chooser.getSelectedFile(), textField.getText());
-				
-	        	comboBoxPlate.removeAllItems();
-	        	List<String> plates = trajectoryController.getPlates();
-	        	for (String plate : plates) 
-	        		comboBoxPlate.addItem(plate);
+				File[] selected = chooser.getSelectedFiles();
+				if (selected.length == 0 && chooser.getSelectedFile() != null)
+					selected = new File[] {chooser.getSelectedFile()};
+				for (File file : selected) {
+					ImportJob job = fileController.submitImport(file, textField.getText(), importListener);
+					if (job == null) {
+						lblImportStatus.setText("Unsupported file: " + file.getName());
+						continue;
+					}
+					++runningImports;
+					importProgress.setIndeterminate(true);
+					importProgress.setVisible(true);
+				}
+			}
+		});
+		
+		JButton btnCancelImport = new JButton("Cancel");
+		btnCancelImport.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent arg0) {
+				fileController.cancelImports();
 			}
 		});
 		
@@ -391,7 +519,26 @@ public class SwingGui {
 							.addComponent(lblPlate)
 							.addPreferredGap(ComponentPlacement.RELATED, 26, Short.MAX_VALUE)
 							.addComponent(textField, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
-						.addComponent(btnImport, Alignment.TRAILING))
+						.addComponent(chckbxCopy)
+						.addComponent(chckbxThin)
+						.addGroup(gl_panel_1.createSequentialGroup()
+							.addComponent(lblMinDistance)
+							.addPreferredGap(ComponentPlacement.RELATED, 26, Short.MAX_VALUE)
+							.addComponent(spinnerMinDistance, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+						.addGroup(gl_panel_1.createSequentialGroup()
+							.addComponent(lblMinInterval)
+							.addPreferredGap(ComponentPlacement.RELATED, 26, Short.MAX_VALUE)
+							.addComponent(spinnerMinInterval, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+						.addGroup(gl_panel_1.createSequentialGroup()
+							.addComponent(lblTolerance)
+							.addPreferredGap(ComponentPlacement.RELATED, 26, Short.MAX_VALUE)
+							.addComponent(spinnerTolerance, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+						.addComponent(importProgress, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+						.addComponent(lblImportStatus, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+						.addGroup(Alignment.TRAILING, gl_panel_1.createSequentialGroup()
+							.addComponent(btnCancelImport)
+							.addPreferredGap(ComponentPlacement.RELATED)
+							.addComponent(btnImport)))
 					.addContainerGap())
 		);
 		gl_panel_1.setVerticalGroup(
@@ -404,10 +551,51 @@ public class SwingGui {
 						.addComponent(lblPlate)
 						.addComponent(textField, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
 					.addPreferredGap(ComponentPlacement.RELATED)
-					.addComponent(btnImport)
+					.addComponent(chckbxCopy)
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addComponent(chckbxThin)
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addGroup(gl_panel_1.createParallelGroup(Alignment.BASELINE)
+						.addComponent(lblMinDistance)
+						.addComponent(spinnerMinDistance, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addGroup(gl_panel_1.createParallelGroup(Alignment.BASELINE)
+						.addComponent(lblMinInterval)
+						.addComponent(spinnerMinInterval, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addGroup(gl_panel_1.createParallelGroup(Alignment.BASELINE)
+						.addComponent(lblTolerance)
+						.addComponent(spinnerTolerance, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addComponent(importProgress, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addComponent(lblImportStatus)
+					.addPreferredGap(ComponentPlacement.RELATED)
+					.addGroup(gl_panel_1.createParallelGroup(Alignment.BASELINE)
+						.addComponent(btnCancelImport)
+						.addComponent(btnImport))
 					.addContainerGap(22, Short.MAX_VALUE))
 		);
 		panel_1.setLayout(gl_panel_1);
 		frmTracker.getContentPane().setLayout(groupLayout);
 	}
+	
+	//a new search supersedes the one still running
+	private void cancelSearch() {
+		if (search != null)
+			search.cancel(true);
+		if (coincidence != null)
+			coincidence.cancel(true);
+		search = null;
+		coincidence = null;
+	}
+	
+	//true when the query failed or was cancelled
+	private static boolean report(Throwable failure) {
+		if (failure == null)
+			return false;
+		if (!(failure instanceof CancellationException) && !(failure.getCause() instanceof CancellationException))
+			failure.printStackTrace();
+		return true;
+	}
 }
@@ -0,0 +1,122 @@
+package view.swing;
+
+import java.awt.Graphics;
+import java.awt.Point;
+
+import org.openstreetmap.gui.jmapviewer.JMapViewer;
+import org.openstreetmap.gui.jmapviewer.Layer;
+import org.openstreetmap.gui.jmapviewer.MapMarkerDot;
+import org.openstreetmap.gui.jmapviewer.MapObjectImpl;
+import org.openstreetmap.gui.jmapviewer.interfaces.MapMarker;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+
+import model.dto.BoundingBox;
+import model.dto.Coordinate;
+import model.dto.TrajectoryBuffer;
+
+/**
+ * A whole trajectory as one marker, drawn the way a {@link MapMarkerDot} a point would be
+ * but read from the buffer. The map positions of the points are worked out once a zoom,
+ * into two int arrays; points falling on the pixel drawn last are skipped.
+ */
+class TrajectoryMarker extends MapObjectImpl implements MapMarker {
+	private final JMapViewer map;
+	private final TrajectoryBuffer trajectory;
+	private final BoundingBox bounds;
+	//the middle of the bounds, where the map places the marker
+	private final Coordinate coordinate;
+	//positions on the whole map of the points, and of the coordinate, at the zoom
+	private TileSource source;
+	private int zoom = -1;
+	private int[] x;
+	private int[] y;
+	private Point origin;
+
+	TrajectoryMarker(Layer layer, JMapViewer map, TrajectoryBuffer trajectory) {
+		super(layer, trajectory.getPlate(), MapMarkerDot.getDefaultStyle());
+		this.map = map;
+		this.trajectory = trajectory;
+		this.bounds = trajectory.getBounds();
+		this.coordinate = new Coordinate((bounds.getSouth() + bounds.getNorth()) / 2, (bounds.getWest() + bounds.getEast()) / 2);
+	}
+
+	BoundingBox getBounds() {
+		return bounds;
+	}
+
+	@Override
+	public Coordinate getCoordinate() {
+		return coordinate;
+	}
+
+	@Override
+	public double getLat() {
+		return coordinate.getLat();
+	}
+
+	@Override
+	public double getLon() {
+		return coordinate.getLon();
+	}
+
+	@Override
+	public void setLat(double lat) {
+		throw new UnsupportedOperationException("a trajectory is not moved");
+	}
+
+	@Override
+	public void setLon(double lon) {
+		throw new UnsupportedOperationException("a trajectory is not moved");
+	}
+
+	@Override
+	public double getRadius() {
+		return MapMarkerDot.DOT_RADIUS;
+	}
+
+	//variable so the map paints it even when its middle is out of sight
+	@Override
+	public STYLE getMarkerStyle() {
+		return STYLE.VARIABLE;
+	}
+
+	//position is where the coordinate goes, the points are placed relative to it
+	@Override
+	public void paint(Graphics g, Point position, int radius) {
+		project();
+		int dx = position.x - origin.x;
+		int dy = position.y - origin.y;
+		int r = MapMarkerDot.DOT_RADIUS;
+		int width = map.getWidth(), height = map.getHeight();
+		int lastX = Integer.MIN_VALUE, lastY = Integer.MIN_VALUE;
+		for (int i = 0; i < x.length; ++i) {
+			int px = x[i] + dx, py = y[i] + dy;
+			if (px < -r || py < -r || px > width + r || py > height + r || (px == lastX && py == lastY))
+				continue;
+			lastX = px;
+			lastY = py;
+			if (getBackColor() != null) {
+				g.setColor(getBackColor());
+				g.fillOval(px - r, py - r, 2 * r, 2 * r);
+			}
+			g.setColor(getColor());
+			g.drawOval(px - r, py - r, 2 * r, 2 * r);
+		}
+	}
+
+	private void project() {
+		TileSource current = map.getTileController().getTileSource();
+		if (current == source && map.getZoom() == zoom)
+			return;
+		source = current;
+		zoom = map.getZoom();
+		x = new int[trajectory.size()];
+		y = new int[trajectory.size()];
+		for (int i = 0; i < x.length; ++i) {
+			Point p = source.latLonToXY(trajectory.getLatitude(i), trajectory.getLongitude(i), zoom);
+			x[i] = p.x;
+			y[i] = p.y;
+		}
+		origin = source.latLonToXY(coordinate.getLat(), coordinate.getLon(), zoom);
+	}
+}